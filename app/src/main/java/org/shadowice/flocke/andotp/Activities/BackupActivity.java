@@ -63,15 +63,19 @@ import org.shadowice.flocke.andotp.Tasks.PlainTextRestoreTask;
 import org.shadowice.flocke.andotp.Tasks.UiBasedBackgroundTask;
 import org.shadowice.flocke.andotp.Utilities.BackupHelper;
 import org.shadowice.flocke.andotp.Utilities.Constants;
+import org.shadowice.flocke.andotp.Utilities.DatabaseFileHelper;
 import org.shadowice.flocke.andotp.Utilities.DatabaseHelper;
 import org.shadowice.flocke.andotp.Utilities.EncryptionHelper;
 import org.shadowice.flocke.andotp.Utilities.Tools;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.StringReader;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.HashSet;
 
 import javax.crypto.SecretKey;
 
@@ -303,6 +307,8 @@ public class BackupActivity extends BackgroundTaskActivity<BackupTaskResult> {
                 Intent resultIntent = api.executeApi(result.decryptIntent, is, os);
 
                 handleOpenPGPResult(resultIntent, os, result.uri, Constants.INTENT_BACKUP_DECRYPT_PGP);
+            } else if (result.entries != null) {
+                restoreEntries(result.entries, result.damaged, false);
             } else {
                 restoreEntries(result.payload, false);
             }
@@ -434,13 +440,37 @@ public class BackupActivity extends BackgroundTaskActivity<BackupTaskResult> {
     }
 
     private void restoreEntries(String text, boolean finish) {
-        ArrayList<Entry> entries = DatabaseHelper.stringToEntries(text);
+        ArrayList<Entry> entries;
+        boolean damaged = false;
+
+        try {
+            entries = DatabaseFileHelper.readEntries(new StringReader(text));
+        } catch (DatabaseFileHelper.MalformedEntriesException error) {
+            error.printStackTrace();
+            entries = error.getEntries();
+            damaged = true;
+        } catch (IOException error) {
+            error.printStackTrace();
+            entries = new ArrayList<>();
+        }
+
+        restoreEntries(entries, damaged, finish);
+    }
+
+    /**
+     * @param damaged Only the entries before an error in the data could be read, they are still
+     *                restored (like older versions did) but the user is told about it
+     */
+    private void restoreEntries(ArrayList<Entry> entries, boolean damaged, boolean finish) {
+        if (damaged)
+            Toast.makeText(this, getString(R.string.backup_toast_import_damaged, entries.size()), Toast.LENGTH_LONG).show();
 
         if (entries.size() > 0) {
             if (! swReplace.isChecked()) {
                 ArrayList<Entry> currentEntries = DatabaseHelper.loadDatabase(this, encryptionKey);
 
-                entries.removeAll(currentEntries);
+                // Duplicates are found in one pass through a hash set of the current entries
+                entries.removeAll(new HashSet<>(currentEntries));
                 entries.addAll(currentEntries);
             }
 
@@ -453,7 +483,7 @@ public class BackupActivity extends BackgroundTaskActivity<BackupTaskResult> {
             } else {
                 Toast.makeText(this, R.string.backup_toast_import_save_failed, Toast.LENGTH_LONG).show();
             }
-        } else {
+        } else if (!damaged) {
             Toast.makeText(this, R.string.backup_toast_import_no_entries, Toast.LENGTH_LONG).show();
         }
     }
@@ -557,7 +587,7 @@ public class BackupActivity extends BackgroundTaskActivity<BackupTaskResult> {
 
     private void backupEncryptedWithPGP(Uri uri, Intent encryptIntent) {
         ArrayList<Entry> entries = DatabaseHelper.loadDatabase(this, encryptionKey);
-        String plainJSON = DatabaseHelper.entriesToString(entries);
+        String plainJSON = DatabaseFileHelper.entriesToString(entries);
 
         if (encryptIntent == null) {
             encryptIntent = new Intent();
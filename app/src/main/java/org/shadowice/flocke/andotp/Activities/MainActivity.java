@@ -72,11 +72,14 @@ import org.shadowice.flocke.andotp.Database.Entry;
 import org.shadowice.flocke.andotp.Dialogs.HideableDialog;
 import org.shadowice.flocke.andotp.R;
 import org.shadowice.flocke.andotp.Utilities.Constants;
+import org.shadowice.flocke.andotp.Utilities.DatabaseCache;
+import org.shadowice.flocke.andotp.Utilities.DatabaseSaver;
 import org.shadowice.flocke.andotp.Utilities.EncryptionHelper;
 import org.shadowice.flocke.andotp.Utilities.KeyStoreHelper;
 import org.shadowice.flocke.andotp.Utilities.NotificationHelper;
 import org.shadowice.flocke.andotp.Utilities.ScanQRCodeFromFile;
 import org.shadowice.flocke.andotp.Utilities.TokenCalculator;
+import org.shadowice.flocke.andotp.Utilities.TokenScheduler;
 import org.shadowice.flocke.andotp.View.EntriesCardAdapter;
 import org.shadowice.flocke.andotp.View.ItemTouchHelper.SimpleItemTouchHelperCallback;
 import org.shadowice.flocke.andotp.Dialogs.ManualEntryDialog;
@@ -114,6 +117,8 @@ public class MainActivity extends BaseActivity
 
     private Handler handler;
     private Runnable handlerTask;
+    private ObjectAnimator progressAnimation = null;
+    private boolean updaterRunning = false;
 
     private DrawerLayout tagsDrawerLayout;
     private ListView tagsDrawerListView;
@@ -177,9 +182,10 @@ public class MainActivity extends BaseActivity
     }
 
     private void populateAdapter() {
-        adapter.loadEntries();
-        tagsDrawerAdapter.setTags(TagsAdapter.createTagsMap(adapter.getEntries(), settings));
-        adapter.filterByTags(tagsDrawerAdapter.getActiveTags());
+        adapter.loadEntries(() -> {
+            tagsDrawerAdapter.setTags(TagsAdapter.createTagsMap(adapter.getEntries(), settings));
+            adapter.filterByTags(tagsDrawerAdapter.getActiveTags());
+        });
     }
 
     private void checkAutomaticTime() {
@@ -213,8 +219,14 @@ public class MainActivity extends BaseActivity
             requireAuthentication = true;
 
         setBroadcastCallback(() -> {
-            if (settings.getRelockOnScreenOff() && settings.getAuthMethod() != AuthMethod.NONE)
+            // Don't keep pending saves around while the device is off
+            DatabaseSaver.flushAsync();
+
+            if (settings.getRelockOnScreenOff() && settings.getAuthMethod() != AuthMethod.NONE) {
                 requireAuthentication = true;
+                DatabaseCache.clear();
+                KeyStoreHelper.evictEncryptionKey();
+            }
         });
 
         ProcessLifecycleOwner.get().getLifecycle().addObserver(new ProcessLifecycleObserver());
@@ -274,6 +286,7 @@ public class MainActivity extends BaseActivity
             public void onChanged() {
                 super.onChanged();
                 hideProgressBar();
+                rescheduleUpdater();
             }
 
             @Override
@@ -292,12 +305,14 @@ public class MainActivity extends BaseActivity
             public void onItemRangeInserted(int positionStart, int itemCount) {
                 super.onItemRangeInserted(positionStart, itemCount);
                 hideProgressBar();
+                rescheduleUpdater();
             }
 
             @Override
             public void onItemRangeRemoved(int positionStart, int itemCount) {
                 super.onItemRangeRemoved(positionStart, itemCount);
                 hideProgressBar();
+                rescheduleUpdater();
             }
 
             @Override
@@ -343,23 +358,25 @@ public class MainActivity extends BaseActivity
         });
 
         handler = new Handler(Looper.getMainLooper());
+        // Only wakes up when a token changes, starts being highlighted or the global progress restarts
         handlerTask = new Runnable()
         {
             @Override
             public void run() {
+                long time = System.currentTimeMillis() / 1000;
+
+                adapter.updateTimeBasedTokens(time);
+
+                long nextUpdate = adapter.getNextTokenUpdate(time);
+
                 if (!settings.isHideGlobalTimeoutEnabled()) {
-                    int progress = (int) (TokenCalculator.TOTP_DEFAULT_PERIOD - (System.currentTimeMillis() / 1000) % TokenCalculator.TOTP_DEFAULT_PERIOD);
-                    progressBar.setProgress(progress * 100);
+                    updateGlobalProgress();
 
-                    ObjectAnimator animation = ObjectAnimator.ofInt(progressBar, "progress", (progress - 1) * 100);
-                    animation.setDuration(animatorDuration);
-                    animation.setInterpolator(new LinearInterpolator());
-                    animation.start();
+                    nextUpdate = Math.min(nextUpdate, TokenScheduler.getNextWindow(time, TokenCalculator.TOTP_DEFAULT_PERIOD));
                 }
 
-                adapter.updateTimeBasedTokens();
-
-                handler.postDelayed(this, 1000);
+                if (nextUpdate != Long.MAX_VALUE)
+                    handler.postDelayed(this, Math.max(nextUpdate * 1000 - System.currentTimeMillis(), 0));
             }
         };
 
@@ -413,13 +430,43 @@ public class MainActivity extends BaseActivity
 
     // Controls for the updater background task
     public void stopUpdater() {
+        updaterRunning = false;
         handler.removeCallbacks(handlerTask);
+
+        if (progressAnimation != null) {
+            progressAnimation.cancel();
+            progressAnimation = null;
+        }
     }
 
     public void startUpdater() {
+        updaterRunning = true;
+        handler.removeCallbacks(handlerTask);
         handler.post(handlerTask);
     }
 
+    // The next update depends on the displayed entries, so it has to be recalculated if they change
+    private void rescheduleUpdater() {
+        if (updaterRunning)
+            startUpdater();
+    }
+
+    // Animates the global progress until the end of the current default window
+    private void updateGlobalProgress() {
+        long periodMillis = TokenCalculator.TOTP_DEFAULT_PERIOD * 1000L;
+        long remaining = periodMillis - System.currentTimeMillis() % periodMillis;
+
+        if (progressAnimation != null)
+            progressAnimation.cancel();
+
+        progressBar.setProgress((int) (remaining / 10));
+
+        progressAnimation = ObjectAnimator.ofInt(progressBar, "progress", 0);
+        progressAnimation.setDuration(remaining * animatorDuration / 1000);
+        progressAnimation.setInterpolator(new LinearInterpolator());
+        progressAnimation.start();
+    }
+
     @Override
     public void onResume() {
         super.onResume();
@@ -482,7 +529,7 @@ public class MainActivity extends BaseActivity
                 key.equals(getString(R.string.settings_key_label_display)) ||
                 key.equals(getString(R.string.settings_key_split_group_size)) ||
                 key.equals(getString(R.string.settings_key_thumbnail_size))) {
-            adapter.notifyDataSetChanged();
+            adapter.refreshSettings();
         } else if (key.equals(getString(R.string.settings_key_search_includes))) {
             adapter.clearFilter();
         } else if (key.equals(getString(R.string.settings_key_tap_single)) ||
@@ -520,8 +567,7 @@ public class MainActivity extends BaseActivity
             }
         } else if (requestCode == Constants.INTENT_MAIN_BACKUP && resultCode == RESULT_OK) {
             if (intent.getBooleanExtra("reload", false)) {
-                adapter.loadEntries();
-                refreshTags();
+                adapter.loadEntries(this::refreshTags);
             }
         } else if (requestCode == Constants.INTENT_MAIN_SETTINGS && resultCode == RESULT_OK) {
             boolean encryptionChanged = intent.getBooleanExtra(Constants.EXTRA_SETTINGS_ENCRYPTION_CHANGED, false);
@@ -950,8 +996,14 @@ public class MainActivity extends BaseActivity
     private class ProcessLifecycleObserver implements DefaultLifecycleObserver {
         @Override
         public void onStop(@NonNull LifecycleOwner owner) {
-            if (MainActivity.this.settings.getRelockOnBackground())
+            // The process might be killed while in the background
+            DatabaseSaver.flushAsync();
+
+            if (MainActivity.this.settings.getRelockOnBackground()) {
                 MainActivity.this.requireAuthentication = true;
+                DatabaseCache.clear();
+                KeyStoreHelper.evictEncryptionKey();
+            }
         }
     }
 
@@ -68,7 +68,7 @@ import static org.shadowice.flocke.andotp.Utilities.Constants.AuthMethod;
 import static org.shadowice.flocke.andotp.Utilities.Constants.EncryptionType;
 
 public class SettingsActivity extends BackgroundTaskActivity<ChangeEncryptionTask.Result>
-        implements SharedPreferences.OnSharedPreferenceChangeListener, EncryptionHelper.EncryptionChangeCallback {
+        implements SharedPreferences.OnSharedPreferenceChangeListener, DatabaseHelper.EncryptionChangeCallback {
 
     private SettingsFragment fragment;
     private SharedPreferences prefs;
@@ -312,7 +312,7 @@ public class SettingsActivity extends BackgroundTaskActivity<ChangeEncryptionTas
 
         private CredentialsPreference credentialsPreference;
         private SecretKey encryptionKey;
-        private EncryptionHelper.EncryptionChangeCallback encryptionChangeCallback;
+        private DatabaseHelper.EncryptionChangeCallback encryptionChangeCallback;
 
         private ListPreference encryption;
         private ListPreference useAutoBackup;
@@ -361,7 +361,7 @@ public class SettingsActivity extends BackgroundTaskActivity<ChangeEncryptionTas
                 credentialsPreference.setOldEncryptionKey(encryptionKey);
         }
 
-        public void setEncryptionChangeCallback(EncryptionHelper.EncryptionChangeCallback changeCallback) {
+        public void setEncryptionChangeCallback(DatabaseHelper.EncryptionChangeCallback changeCallback) {
             this.encryptionChangeCallback = changeCallback;
 
             if (credentialsPreference != null)
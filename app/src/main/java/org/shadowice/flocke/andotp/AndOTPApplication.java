@@ -0,0 +1,19 @@
+package org.shadowice.flocke.andotp;
+
+import android.app.Application;
+
+import org.shadowice.flocke.andotp.Database.Entry;
+import org.shadowice.flocke.andotp.Utilities.EntryThumbnail;
+
+/**
+ * Process-wide setup that has to happen before any component (activity, receiver, task) reads or
+ * creates entries.
+ */
+public class AndOTPApplication extends Application {
+    @Override
+    public void onCreate() {
+        super.onCreate();
+
+        Entry.setThumbnailResolver(new EntryThumbnail.ThumbnailResolver());
+    }
+}
@@ -50,8 +50,8 @@ import org.shadowice.flocke.andotp.R;
 import org.shadowice.flocke.andotp.Tasks.ChangeCredentialsTask;
 import org.shadowice.flocke.andotp.Utilities.ConfirmedPasswordTransformationHelper;
 import org.shadowice.flocke.andotp.Utilities.Constants;
+import org.shadowice.flocke.andotp.Utilities.DatabaseHelper;
 import org.shadowice.flocke.andotp.Utilities.EditorActionHelper;
-import org.shadowice.flocke.andotp.Utilities.EncryptionHelper;
 import org.shadowice.flocke.andotp.Utilities.Settings;
 import org.shadowice.flocke.andotp.Utilities.UIHelper;
 
@@ -95,7 +95,7 @@ public class CredentialsPreference extends DialogPreference
     private Button btnSave;
     private ProgressBar progressBar;
 
-    private EncryptionHelper.EncryptionChangeCallback encryptionChangeCallback;
+    private DatabaseHelper.EncryptionChangeCallback encryptionChangeCallback;
 
     public CredentialsPreference(Context context, AttributeSet attrs) {
         super(context, attrs);
@@ -111,7 +111,7 @@ public class CredentialsPreference extends DialogPreference
         this.oldEncryptionKey = oldKey;
     }
 
-    public void setEncryptionChangeCallback(EncryptionHelper.EncryptionChangeCallback changeCallback) {
+    public void setEncryptionChangeCallback(DatabaseHelper.EncryptionChangeCallback changeCallback) {
         this.encryptionChangeCallback = changeCallback;
     }
 
@@ -3,8 +3,11 @@ package org.shadowice.flocke.andotp.Tasks;
 import android.content.Intent;
 import android.net.Uri;
 
+import org.shadowice.flocke.andotp.Database.Entry;
 import org.shadowice.flocke.andotp.R;
 
+import java.util.ArrayList;
+
 public class BackupTaskResult {
     public final boolean success;
     public final String payload;
@@ -14,6 +17,10 @@ public class BackupTaskResult {
     public Intent decryptIntent = null;
     public Uri uri = null;
 
+    // Entries read by the task itself, the payload is parsed otherwise
+    public ArrayList<Entry> entries = null;
+    public boolean damaged = false;
+
     public final ResultType resultType;
 
     public enum ResultType {
@@ -41,6 +48,17 @@ public class BackupTaskResult {
         return new BackupTaskResult(type, true, payload, R.string.backup_toast_export_success);
     }
 
+    /**
+     * @param damaged Only the entries before an error in the data could be read
+     */
+    public static BackupTaskResult restored(ArrayList<Entry> entries, boolean damaged) {
+        BackupTaskResult result = new BackupTaskResult(ResultType.RESTORE, true, null, R.string.backup_toast_export_success);
+        result.entries = entries;
+        result.damaged = damaged;
+
+        return result;
+    }
+
     public static BackupTaskResult failure(ResultType type, int messageId) {
         return new BackupTaskResult(type, false, null, messageId);
     }
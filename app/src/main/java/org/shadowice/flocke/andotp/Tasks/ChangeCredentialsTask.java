@@ -5,13 +5,13 @@ import android.content.Context;
 import androidx.annotation.NonNull;
 
 import org.shadowice.flocke.andotp.Utilities.Constants;
-import org.shadowice.flocke.andotp.Utilities.EncryptionHelper;
+import org.shadowice.flocke.andotp.Utilities.DatabaseHelper;
 import org.shadowice.flocke.andotp.Utilities.Settings;
 
 import javax.crypto.SecretKey;
 
 public class ChangeCredentialsTask extends UiBasedBackgroundTask<ChangeCredentialsTask.Result>
-    implements EncryptionHelper.EncryptionChangeCallback {
+    implements DatabaseHelper.EncryptionChangeCallback {
 
     private final Context context;
     private final Settings settings;
@@ -55,7 +55,7 @@ public class ChangeCredentialsTask extends UiBasedBackgroundTask<ChangeCredentia
             if (newKey == null)
                 return new Result(false, null, null);
 
-            if (EncryptionHelper.tryEncryptionChange(context, oldEncryptionKey, encryptionType, newKey, this) != EncryptionHelper.EncryptionChangeResult.SUCCESS)
+            if (DatabaseHelper.tryEncryptionChange(context, oldEncryptionKey, encryptionType, newKey, this) != DatabaseHelper.EncryptionChangeResult.SUCCESS)
                 return new Result(false, null, null);
         }
 
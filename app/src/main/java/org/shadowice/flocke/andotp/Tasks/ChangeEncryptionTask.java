@@ -5,12 +5,12 @@ import android.content.Context;
 import androidx.annotation.NonNull;
 
 import org.shadowice.flocke.andotp.Utilities.Constants;
-import org.shadowice.flocke.andotp.Utilities.EncryptionHelper;
+import org.shadowice.flocke.andotp.Utilities.DatabaseHelper;
 
 import javax.crypto.SecretKey;
 
 public class ChangeEncryptionTask extends UiBasedBackgroundTask<ChangeEncryptionTask.Result>
-    implements EncryptionHelper.EncryptionChangeCallback {
+    implements DatabaseHelper.EncryptionChangeCallback {
 
     private final Context context;
     private final SecretKey oldEncryptionKey;
@@ -20,7 +20,7 @@ public class ChangeEncryptionTask extends UiBasedBackgroundTask<ChangeEncryption
     private SecretKey newEncryptionKey = null;
 
     public ChangeEncryptionTask(Context context, SecretKey oldEncryptionKey, Constants.EncryptionType newEncryptionType, byte[] newKey) {
-        super(new Result(EncryptionHelper.EncryptionChangeResult.TASK_CREATION_FAILED, null, null));
+        super(new Result(DatabaseHelper.EncryptionChangeResult.TASK_CREATION_FAILED, null, null));
 
         this.context = context;
         this.oldEncryptionKey = oldEncryptionKey;
@@ -36,17 +36,17 @@ public class ChangeEncryptionTask extends UiBasedBackgroundTask<ChangeEncryption
     @NonNull
     @Override
     protected Result doInBackground() {
-        EncryptionHelper.EncryptionChangeResult result = EncryptionHelper.tryEncryptionChange(context, oldEncryptionKey, newEncryptionType, newKeyMaterial, this);
+        DatabaseHelper.EncryptionChangeResult result = DatabaseHelper.tryEncryptionChange(context, oldEncryptionKey, newEncryptionType, newKeyMaterial, this);
 
         return new Result(result, this.newEncryptionKey, this.newEncryptionType);
     }
 
     public static class Result {
-        public final EncryptionHelper.EncryptionChangeResult result;
+        public final DatabaseHelper.EncryptionChangeResult result;
         public final SecretKey newEncryptionKey;
         public final Constants.EncryptionType encryptionType;
 
-        public Result(EncryptionHelper.EncryptionChangeResult result, SecretKey newKey, Constants.EncryptionType encryptionType) {
+        public Result(DatabaseHelper.EncryptionChangeResult result, SecretKey newKey, Constants.EncryptionType encryptionType) {
             this.result = result;
             this.newEncryptionKey = newKey;
             this.encryptionType = encryptionType;
@@ -9,7 +9,6 @@ import androidx.annotation.Nullable;
 import org.shadowice.flocke.andotp.Database.Entry;
 import org.shadowice.flocke.andotp.Utilities.BackupHelper;
 import org.shadowice.flocke.andotp.Utilities.Constants;
-import org.shadowice.flocke.andotp.Utilities.DatabaseHelper;
 
 import java.util.ArrayList;
 
@@ -31,7 +30,6 @@ public class EncryptedBackupTask extends GenericBackupTask {
 
     @Override
     protected boolean doBackup() {
-        String payload = DatabaseHelper.entriesToString(entries);
-        return BackupHelper.backupToFile(applicationContext, uri, password, payload);
+        return BackupHelper.backupToFile(applicationContext, uri, password, entries);
     }
 }
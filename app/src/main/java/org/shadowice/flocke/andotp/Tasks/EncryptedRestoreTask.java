@@ -5,14 +5,25 @@ import android.net.Uri;
 
 import androidx.annotation.NonNull;
 
+import org.shadowice.flocke.andotp.Database.Entry;
 import org.shadowice.flocke.andotp.R;
+import org.shadowice.flocke.andotp.Utilities.ChunkedEncryptionHelper;
 import org.shadowice.flocke.andotp.Utilities.Constants;
+import org.shadowice.flocke.andotp.Utilities.DatabaseFileHelper;
 import org.shadowice.flocke.andotp.Utilities.EncryptionHelper;
 import org.shadowice.flocke.andotp.Utilities.StorageAccessHelper;
 
-import java.nio.ByteBuffer;
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.nio.charset.StandardCharsets;
-import java.util.Arrays;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
 
 import javax.crypto.SecretKey;
 
@@ -29,38 +40,57 @@ public class EncryptedRestoreTask extends GenericRestoreTask {
     @Override
     @NonNull
     protected BackupTaskResult doInBackground() {
-        boolean success = true;
-        String decryptedString = "";
+        ArrayList<Entry> entries;
+        boolean damaged = false;
 
         try {
-            byte[] data = StorageAccessHelper.loadFile(applicationContext, uri);
-
             if (oldFormat) {
+                byte[] data = StorageAccessHelper.loadFile(applicationContext, uri);
+
                 SecretKey key = EncryptionHelper.generateSymmetricKeyFromPassword(password);
                 byte[] decrypted = EncryptionHelper.decrypt(key, data);
 
-                decryptedString = new String(decrypted, StandardCharsets.UTF_8);
+                entries = DatabaseFileHelper.readEntries(new InputStreamReader(new ByteArrayInputStream(decrypted), StandardCharsets.UTF_8));
             } else {
-                byte[] iterBytes = Arrays.copyOfRange(data, 0, Constants.INT_LENGTH);
-                byte[] salt = Arrays.copyOfRange(data, Constants.INT_LENGTH, Constants.INT_LENGTH + Constants.ENCRYPTION_IV_LENGTH);
-                byte[] encrypted = Arrays.copyOfRange(data, Constants.INT_LENGTH + Constants.ENCRYPTION_IV_LENGTH, data.length);
-
-                int iter = ByteBuffer.wrap(iterBytes).getInt();
-
-                SecretKey key = EncryptionHelper.generateSymmetricKeyPBKDF2(password, iter, salt);
-
-                byte[] decrypted = EncryptionHelper.decrypt(key, encrypted);
-                decryptedString = new String(decrypted, StandardCharsets.UTF_8);
+                entries = restoreBackup();
             }
+        } catch (DatabaseFileHelper.MalformedEntriesException e) {
+            e.printStackTrace();
+            entries = e.getEntries();
+            damaged = true;
         } catch (Exception e) {
-            success = false;
             e.printStackTrace();
+            return BackupTaskResult.failure(BackupTaskResult.ResultType.RESTORE, R.string.backup_toast_import_decryption_failed);
         }
 
-        if (success) {
-            return BackupTaskResult.success(BackupTaskResult.ResultType.RESTORE, decryptedString);
-        } else {
-            return BackupTaskResult.failure(BackupTaskResult.ResultType.RESTORE, R.string.backup_toast_import_decryption_failed);
+        return BackupTaskResult.restored(entries, damaged);
+    }
+
+    // Backups are either encrypted in chunks (read while decrypting) or as a whole
+    private ArrayList<Entry> restoreBackup()
+            throws IOException, GeneralSecurityException {
+        try (InputStream in = new BufferedInputStream(StorageAccessHelper.openInputStream(applicationContext, uri))) {
+            DataInputStream data = new DataInputStream(in);
+
+            int iter = data.readInt();
+            byte[] salt = new byte[Constants.ENCRYPTION_IV_LENGTH];
+            data.readFully(salt);
+
+            SecretKey key = EncryptionHelper.generateSymmetricKeyPBKDF2(password, iter, salt);
+
+            if (ChunkedEncryptionHelper.isChunked(in)) {
+                try (Reader reader = new BufferedReader(new InputStreamReader(ChunkedEncryptionHelper.decrypt(key, in), StandardCharsets.UTF_8))) {
+                    return DatabaseFileHelper.readEntries(reader);
+                }
+            } else {
+                // Encrypted as a whole, decrypted in place behind the header of the loaded file
+                byte[] file = StorageAccessHelper.loadFile(applicationContext, uri);
+                int offset = Constants.INT_LENGTH + Constants.ENCRYPTION_IV_LENGTH;
+
+                byte[] decrypted = EncryptionHelper.decrypt(key, file, offset, file.length - offset);
+
+                return DatabaseFileHelper.readEntries(new InputStreamReader(new ByteArrayInputStream(decrypted), StandardCharsets.UTF_8));
+            }
         }
     }
 }
@@ -8,7 +8,7 @@ import androidx.annotation.Nullable;
 
 import org.shadowice.flocke.andotp.Database.Entry;
 import org.shadowice.flocke.andotp.Utilities.Constants;
-import org.shadowice.flocke.andotp.Utilities.DatabaseHelper;
+import org.shadowice.flocke.andotp.Utilities.DatabaseFileHelper;
 import org.shadowice.flocke.andotp.Utilities.StorageAccessHelper;
 
 import java.util.ArrayList;
@@ -29,7 +29,7 @@ public class PlainTextBackupTask extends GenericBackupTask {
 
     @Override
     protected boolean doBackup() {
-        String payload = DatabaseHelper.entriesToString(entries);
+        String payload = DatabaseFileHelper.entriesToString(entries);
         return StorageAccessHelper.saveFile(applicationContext, uri, payload);
     }
 }
\ No newline at end of file
@@ -78,7 +78,8 @@ public class BackupAgent extends BackupAgentHelper {
         SharedPreferencesBackupHelper sharedPreferencesBackupHelper = new SharedPreferencesBackupHelper(this, prefs);
         addHelper(PREFS_BACKUP_KEY, sharedPreferencesBackupHelper);
 
-        FileBackupHelper fileBackupHelper = new FileBackupHelper(this, Constants.FILENAME_DATABASE, Constants.FILENAME_DATABASE_BACKUP);
+        FileBackupHelper fileBackupHelper = new FileBackupHelper(this, Constants.FILENAME_DATABASE, Constants.FILENAME_DATABASE_BACKUP,
+                Constants.FILENAME_JOURNAL, Constants.FILENAME_JOURNAL_BACKUP);
         addHelper(FILES_BACKUP_KEY, fileBackupHelper);
     }
 }
@@ -5,10 +5,18 @@ import android.net.Uri;
 
 import androidx.documentfile.provider.DocumentFile;
 
+import org.shadowice.flocke.andotp.Database.Entry;
 import org.shadowice.flocke.andotp.R;
 
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 
 import javax.crypto.SecretKey;
 
@@ -99,25 +107,43 @@ public class BackupHelper {
         return Constants.BackupType.UNAVAILABLE;
     }
 
-    public static boolean backupToFile(Context context, Uri uri, String password, String plain)
+    /**
+     * Writes an encrypted backup: PBKDF2 iterations and salt, followed by the JSON of the entries
+     * encrypted as a whole. If enabled in the settings the JSON is encrypted in chunks instead (see
+     * {@link ChunkedEncryptionHelper}) without holding the whole backup in memory, older versions
+     * of andOTP and other apps can't read these backups.
+     */
+    public static boolean backupToFile(Context context, Uri uri, String password, ArrayList<Entry> entries)
     {
-        boolean success;
+        boolean success = true;
 
         try {
             int iter = EncryptionHelper.generateRandomIterations();
             byte[] salt = EncryptionHelper.generateRandom(Constants.ENCRYPTION_IV_LENGTH);
 
             SecretKey key = EncryptionHelper.generateSymmetricKeyPBKDF2(password, iter, salt);
-            byte[] encrypted = EncryptionHelper.encrypt(key, plain.getBytes(StandardCharsets.UTF_8));
+            boolean chunked = new Settings(context).getIsChunkedBackupEnabled();
 
-            byte[] iterBytes = ByteBuffer.allocate(Constants.INT_LENGTH).putInt(iter).array();
-            byte[] data = new byte[Constants.INT_LENGTH + Constants.ENCRYPTION_IV_LENGTH + encrypted.length];
+            try (OutputStream out = new BufferedOutputStream(StorageAccessHelper.openOutputStream(context, uri))) {
+                out.write(ByteBuffer.allocate(Constants.INT_LENGTH).putInt(iter).array());
+                out.write(salt);
 
-            System.arraycopy(iterBytes, 0, data, 0, Constants.INT_LENGTH);
-            System.arraycopy(salt, 0, data, Constants.INT_LENGTH, Constants.ENCRYPTION_IV_LENGTH);
-            System.arraycopy(encrypted, 0, data, Constants.INT_LENGTH + Constants.ENCRYPTION_IV_LENGTH, encrypted.length);
+                if (chunked) {
+                    Writer writer = new BufferedWriter(new OutputStreamWriter(ChunkedEncryptionHelper.encrypt(key, out), StandardCharsets.UTF_8));
+                    DatabaseFileHelper.writeEntries(writer, entries);
 
-            success = StorageAccessHelper.saveFile(context, uri, data);
+                    // Writes the last chunk
+                    writer.close();
+                } else {
+                    ByteArrayOutputStream plain = new ByteArrayOutputStream();
+
+                    Writer writer = new BufferedWriter(new OutputStreamWriter(plain, StandardCharsets.UTF_8));
+                    DatabaseFileHelper.writeEntries(writer, entries);
+                    writer.flush();
+
+                    out.write(EncryptionHelper.encrypt(key, plain.toByteArray()));
+                }
+            }
         } catch (Exception e) {
             e.printStackTrace();
             success = false;
@@ -0,0 +1,103 @@
+package org.shadowice.flocke.andotp.Utilities;
+
+import org.shadowice.flocke.andotp.Database.Entry;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.crypto.SecretKey;
+
+/**
+ * Decrypted copy of the database shared by everything in the process (activities, receivers), so
+ * the database file is only decrypted again after it changed.
+ *
+ * The entries are kept in the binary format (see {@link DatabaseFileHelper#entriesToBytes(List)}),
+ * every caller gets its own copy and the plaintext can be overwritten when the app is locked. The
+ * cache is stamped with a generation that is increased whenever the database files change, a
+ * copy read before a change is never stored.
+ */
+public class DatabaseCache {
+    private static final Object lock = new Object();
+
+    // Guarded by lock
+    private static long generation = 0;
+    private static byte[] data = null;
+    private static SecretKey encryptionKey = null;
+
+    /**
+     * @return Generation to pass to {@link #put(long, SecretKey, List)} for entries read from the
+     *         database files after this call
+     */
+    static long getGeneration() {
+        synchronized (lock) {
+            return generation;
+        }
+    }
+
+    /**
+     * @return A copy of the cached entries or null if there are none for this key
+     */
+    static ArrayList<Entry> get(SecretKey key) {
+        synchronized (lock) {
+            if (data == null || key == null || !key.equals(encryptionKey))
+                return null;
+
+            try {
+                return DatabaseFileHelper.readBinaryEntries(new ByteArrayInputStream(data));
+            } catch (IOException error) {
+                error.printStackTrace();
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Stores the entries, unless the database files changed (or the cache was cleared) since the
+     * given generation.
+     */
+    static void put(long readGeneration, SecretKey key, List<Entry> entries) {
+        byte[] encoded = DatabaseFileHelper.entriesToBytes(entries);
+
+        synchronized (lock) {
+            if (readGeneration != generation) {
+                Arrays.fill(encoded, (byte) 0);
+                return;
+            }
+
+            wipe();
+
+            data = encoded;
+            encryptionKey = key;
+        }
+    }
+
+    /**
+     * Has to be called whenever the database files change (while holding the database file lock).
+     */
+    static void invalidate() {
+        synchronized (lock) {
+            generation++;
+            wipe();
+        }
+    }
+
+    /**
+     * Removes the decrypted entries (and the ciphers used to decrypt them) from memory, called
+     * when the app is locked or wiped.
+     */
+    public static void clear() {
+        invalidate();
+        CipherPool.clear();
+    }
+
+    private static void wipe() {
+        if (data != null)
+            Arrays.fill(data, (byte) 0);
+
+        data = null;
+        encryptionKey = null;
+    }
+}
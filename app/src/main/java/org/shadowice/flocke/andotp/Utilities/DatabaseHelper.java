@@ -27,16 +27,11 @@ import android.app.backup.BackupManager;
 import android.content.Context;
 import android.widget.Toast;
 
-import org.json.JSONArray;
 import org.shadowice.flocke.andotp.Database.Entry;
 import org.shadowice.flocke.andotp.R;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.util.ArrayList;
 
 import javax.crypto.SecretKey;
@@ -45,35 +40,96 @@ public class DatabaseHelper {
 
     static final Object DatabaseFileLock = new Object();
 
-    public static void wipeDatabase(Context context) {
-        File db = new File(context.getFilesDir() + "/" + Constants.FILENAME_DATABASE);
-        File dbBackup = new File(context.getFilesDir() + "/" + Constants.FILENAME_DATABASE_BACKUP);
-        db.delete();
-        dbBackup.delete();
+    public enum EncryptionChangeResult {
+        SUCCESS, CHANGE_FAILURE, BACKUP_FAILURE, MISSING_NEW_KEY, DECRYPTION_FAILED, TASK_CREATION_FAILED
     }
 
-    private static void copyFile(File src, File dst)
-        throws IOException {
-        try (InputStream in = new FileInputStream(src)) {
-            try (OutputStream out = new FileOutputStream(dst)) {
-                byte[] buffer = new byte[1024];
-                int len;
-                while ((len = in.read(buffer)) > 0) {
-                    out.write(buffer, 0, len);
-                }
+    public interface EncryptionChangeCallback {
+        void onSuccessfulEncryptionChange(Constants.EncryptionType newEncryptionType, SecretKey newEncryptionKey);
+    }
+
+    public static EncryptionChangeResult tryEncryptionChange(Context context, SecretKey oldKey, Constants.EncryptionType newType, byte[] newKey, EncryptionChangeCallback changeCallback) {
+        if (backupDatabase(context)) {
+            ArrayList<Entry> entries;
+
+            if (oldKey != null)
+                entries = loadDatabase(context, oldKey);
+            else
+                return EncryptionChangeResult.DECRYPTION_FAILED;
+
+            SecretKey newEncryptionKey;
+
+            if (newType == Constants.EncryptionType.KEYSTORE) {
+                newEncryptionKey = KeyStoreHelper.loadEncryptionKeyFromKeyStore(context, true);
+            } else if (newKey != null && newKey.length > 0) {
+                newEncryptionKey = EncryptionHelper.generateSymmetricKey(newKey);
+            } else {
+                restoreDatabaseBackup(context);
+                return EncryptionChangeResult.MISSING_NEW_KEY;
+            }
+
+            if (saveDatabase(context, entries, newEncryptionKey)) {
+                // Persist new encryption here already so everything is fully setup when the task finishes
+                Settings settings = new Settings(context);
+                settings.setEncryption(newType);
+
+                if (changeCallback != null)
+                    changeCallback.onSuccessfulEncryptionChange(newType, newEncryptionKey);
+
+                return EncryptionChangeResult.SUCCESS;
             }
+
+            restoreDatabaseBackup(context);
+
+            return EncryptionChangeResult.CHANGE_FAILURE;
+        } else {
+            return EncryptionChangeResult.BACKUP_FAILURE;
+        }
+    }
+
+    public static void wipeDatabase(Context context) {
+        File db = new File(context.getFilesDir() + "/" + Constants.FILENAME_DATABASE);
+        File dbBackup = new File(context.getFilesDir() + "/" + Constants.FILENAME_DATABASE_BACKUP);
+        File journal = new File(context.getFilesDir() + "/" + Constants.FILENAME_JOURNAL);
+        File journalBackup = new File(context.getFilesDir() + "/" + Constants.FILENAME_JOURNAL_BACKUP);
+        DatabaseSaver.discard();
+
+        synchronized (DatabaseHelper.DatabaseFileLock) {
+            DatabaseCache.clear();
+
+            db.delete();
+            dbBackup.delete();
+            journal.delete();
+            journalBackup.delete();
+
+            // Leftovers of interrupted writes
+            FileHelper.failAtomicWrite(db);
+            FileHelper.failAtomicWrite(dbBackup);
+            FileHelper.failAtomicWrite(journal);
+            FileHelper.failAtomicWrite(journalBackup);
         }
     }
 
     public static boolean backupDatabase(Context context) {
         File original = new File(context.getFilesDir() + "/" + Constants.FILENAME_DATABASE);
         File backup = new File(context.getFilesDir() + "/" + Constants.FILENAME_DATABASE_BACKUP);
-
-        if (original.exists()) {
-            try {
-                copyFile(original, backup);
-            } catch (IOException e) {
-                return false;
+        File journal = new File(context.getFilesDir() + "/" + Constants.FILENAME_JOURNAL);
+        File journalBackup = new File(context.getFilesDir() + "/" + Constants.FILENAME_JOURNAL_BACKUP);
+
+        DatabaseSaver.flush();
+
+        synchronized (DatabaseHelper.DatabaseFileLock) {
+            if (original.exists()) {
+                try {
+                    FileHelper.copyFile(original, backup);
+
+                    if (journal.exists())
+                        FileHelper.copyFile(journal, journalBackup);
+                    else
+                        journalBackup.delete();
+                } catch (IOException e) {
+                    return false;
+                }
             }
         }
 
@@ -83,12 +139,26 @@ public class DatabaseHelper {
     public static boolean restoreDatabaseBackup(Context context) {
         File original = new File(context.getFilesDir() + "/" + Constants.FILENAME_DATABASE);
         File backup = new File(context.getFilesDir() + "/" + Constants.FILENAME_DATABASE_BACKUP);
+        File journal = new File(context.getFilesDir() + "/" + Constants.FILENAME_JOURNAL);
+        File journalBackup = new File(context.getFilesDir() + "/" + Constants.FILENAME_JOURNAL_BACKUP);
 
-        if (backup.exists()) {
-            try {
-                copyFile(backup, original);
-            } catch (IOException e) {
-                return false;
+        // Pending saves would overwrite the restored database otherwise
+        DatabaseSaver.discard();
+
+        synchronized (DatabaseHelper.DatabaseFileLock) {
+            if (backup.exists()) {
+                DatabaseCache.invalidate();
+
+                try {
+                    FileHelper.copyFile(backup, original);
+
+                    if (journalBackup.exists())
+                        FileHelper.copyFile(journalBackup, journal);
+                    else
+                        journal.delete();
+                } catch (IOException e) {
+                    return false;
+                }
             }
         }
 
@@ -96,19 +166,28 @@ public class DatabaseHelper {
     }
 
     /* Database functions */
+
+    /**
+     * Saves the entries right away, use {@link DatabaseSaver} to save in the background.
+     */
     public static boolean saveDatabase(Context context, ArrayList<Entry> entries, SecretKey encryptionKey) {
         if (encryptionKey == null) {
             Toast.makeText(context, R.string.toast_encryption_key_empty, Toast.LENGTH_LONG).show();
             return false;
         }
 
-        String jsonString = entriesToString(entries);
+        // Saves that are still pending (or waiting for a retry) are older, they must not overwrite
+        // this one later
+        DatabaseSaver.discard();
 
         try {
             synchronized (DatabaseHelper.DatabaseFileLock) {
-                byte[] data = EncryptionHelper.encrypt(encryptionKey, jsonString.getBytes());
+                DatabaseCache.invalidate();
 
-                FileHelper.writeBytesToFile(new File(context.getFilesDir() + "/" + Constants.FILENAME_DATABASE), data);
+                DatabaseFileHelper.writeDatabase(new File(context.getFilesDir() + "/" + Constants.FILENAME_DATABASE), entries, encryptionKey);
+
+                // All changes are part of the database now
+                new File(context.getFilesDir() + "/" + Constants.FILENAME_JOURNAL).delete();
             }
         } catch (Exception error) {
             error.printStackTrace();
@@ -122,56 +201,50 @@ public class DatabaseHelper {
     }
 
     public static ArrayList<Entry> loadDatabase(Context context, SecretKey encryptionKey) {
+        return loadDatabase(context, encryptionKey, null);
+    }
+
+    /**
+     * Returns the cached entries (see {@link DatabaseCache}) if the database didn't change since it
+     * was last read with this key, otherwise reads the database file.
+     *
+     * @param listener Notified with the entries of the database file while it is read (changes from
+     *                 the journal are only part of the returned list), can be null
+     */
+    public static ArrayList<Entry> loadDatabase(Context context, SecretKey encryptionKey, DatabaseFileHelper.ReadListener listener) {
         ArrayList<Entry> entries = new ArrayList<>();
 
         if (encryptionKey != null) {
+            DatabaseSaver.flush();
+
             try {
                 synchronized (DatabaseHelper.DatabaseFileLock) {
-                    byte[] data = FileHelper.readFileToBytes(new File(context.getFilesDir() + "/" + Constants.FILENAME_DATABASE));
-                    data = EncryptionHelper.decrypt(encryptionKey, data);
+                    ArrayList<Entry> cached = DatabaseCache.get(encryptionKey);
+                    if (cached != null)
+                        return cached;
 
-                    entries = stringToEntries(new String(data));
-                }
-            } catch (Exception error) {
-                error.printStackTrace();
-            }
-        } else {
-            Toast.makeText(context, R.string.toast_encryption_key_empty, Toast.LENGTH_LONG).show();
-        }
+                    long generation = DatabaseCache.getGeneration();
 
-        return entries;
-    }
-
-    /* Conversion functions */
+                    File database = new File(context.getFilesDir() + "/" + Constants.FILENAME_DATABASE);
+                    File journal = new File(context.getFilesDir() + "/" + Constants.FILENAME_JOURNAL);
 
-    public static String entriesToString(ArrayList<Entry> entries) {
-        JSONArray json = new JSONArray();
+                    // Migrating writes a new database file, which would invalidate the journal
+                    entries = DatabaseFileHelper.readDatabase(database, encryptionKey, !journal.exists(), listener);
+                    DatabaseJournal.replay(journal, database, encryptionKey, entries);
 
-        for(Entry e: entries){
-            try {
-                json.put(e.toJSON());
+                    DatabaseCache.put(generation, encryptionKey, entries);
+                }
+            } catch (DatabaseFileHelper.MalformedEntriesException error) {
+                // Like older versions, keep what could be read (without migrating or caching it)
+                error.printStackTrace();
+                entries = error.getEntries();
             } catch (Exception error) {
                 error.printStackTrace();
             }
-        }
-
-        return json.toString();
-    }
-
-    public static ArrayList<Entry> stringToEntries(String data) {
-        ArrayList<Entry> entries = new ArrayList<>();
-
-        try {
-            JSONArray json = new JSONArray(data);
-
-            for (int i = 0; i < json.length(); i++) {
-                Entry entry = new Entry(json.getJSONObject(i));
-                entries.add(entry);
-            }
-        } catch (Exception error) {
-            error.printStackTrace();
+        } else {
+            Toast.makeText(context, R.string.toast_encryption_key_empty, Toast.LENGTH_LONG).show();
         }
 
         return entries;
     }
-}
\ No newline at end of file
+}
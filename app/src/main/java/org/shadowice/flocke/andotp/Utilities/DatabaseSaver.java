@@ -0,0 +1,290 @@
+package org.shadowice.flocke.andotp.Utilities;
+
+import android.app.backup.BackupManager;
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.widget.Toast;
+
+import org.shadowice.flocke.andotp.Database.Entry;
+import org.shadowice.flocke.andotp.R;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.SecretKey;
+
+/**
+ * Saves the database in the background. The entries are encoded right away (so later changes to
+ * them don't matter), encryption and file access happen on a single background thread.
+ *
+ * Saves are delayed a little and coalesced: only the latest snapshot of the whole database is
+ * written and single changes made after it are appended to the journal in one go. Everything that
+ * reads the database files directly has to call {@link #flush()} first, everything that replaces
+ * them has to call {@link #discard()}.
+ *
+ * A save that fails is reported to the user and stays pending, it is retried a little later (or
+ * together with the next save).
+ */
+public class DatabaseSaver {
+    private static final long SAVE_DELAY_MS = 500;
+    private static final long RETRY_DELAY_MS = 10000;
+
+    // The journal is compacted once it is larger than the database itself (but not too early)
+    private static final long JOURNAL_COMPACTION_MIN_SIZE = 16 * 1024;
+
+    private static volatile Thread saverThread = null;
+
+    private static final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "DatabaseSaver");
+        thread.setDaemon(true);
+        saverThread = thread;
+        return thread;
+    });
+
+    private static final Object pendingLock = new Object();
+
+    // Guarded by pendingLock
+    private static Batch pending = null;
+    private static boolean scheduled = false;
+    private static boolean failureReported = false;
+
+    // Increased when pending saves are discarded, batches of an older generation aren't written
+    private static volatile int generation = 0;
+
+    // Saves that are written together
+    private static class Batch {
+        final Context context;
+        final SecretKey encryptionKey;
+        final int generation;
+        byte[] database = null;
+        final ArrayList<DatabaseJournal.Change> changes = new ArrayList<>();
+
+        Batch(Context context, SecretKey encryptionKey, int generation) {
+            this.context = context;
+            this.encryptionKey = encryptionKey;
+            this.generation = generation;
+        }
+    }
+
+    /**
+     * Saves all entries, replacing any save that is still pending.
+     *
+     * @return True once the save is queued, a failure while writing it is shown as a toast
+     */
+    public static boolean saveDatabase(Context context, List<Entry> entries, SecretKey encryptionKey) {
+        if (encryptionKey == null) {
+            Toast.makeText(context, R.string.toast_encryption_key_empty, Toast.LENGTH_LONG).show();
+            return false;
+        }
+
+        byte[] data = DatabaseFileHelper.entriesToBytes(entries);
+
+        synchronized (pendingLock) {
+            Batch batch = getBatch(context, encryptionKey);
+
+            batch.database = data;
+            batch.changes.clear();
+
+            schedule();
+        }
+
+        return true;
+    }
+
+    /**
+     * Saves a single change by appending it to the journal instead of writing the whole database.
+     *
+     * @return False if the change can't be saved on its own (e.g. there is no database file yet),
+     *         the caller has to save all entries then
+     */
+    public static boolean saveDatabaseChange(Context context, DatabaseJournal.Change change, SecretKey encryptionKey) {
+        if (encryptionKey == null)
+            return false;
+
+        synchronized (pendingLock) {
+            if ((pending == null || pending.database == null) && !getDatabaseFile(context).exists())
+                return false;
+
+            getBatch(context, encryptionKey).changes.add(change);
+
+            schedule();
+        }
+
+        return true;
+    }
+
+    /**
+     * Starts writing pending saves right away, without waiting for them to finish.
+     */
+    public static void flushAsync() {
+        executor.execute(DatabaseSaver::writePending);
+    }
+
+    /**
+     * Writes all pending saves and waits until they are on disk.
+     */
+    public static void flush() {
+        if (Thread.currentThread() == saverThread) {
+            writePending();
+            return;
+        }
+
+        try {
+            executor.submit(DatabaseSaver::writePending).get();
+        } catch (InterruptedException error) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException error) {
+            error.printStackTrace();
+        }
+    }
+
+    /**
+     * Drops all pending saves (including one that is about to be written or retried), used before
+     * the database files are replaced or wiped. The files have to be changed while holding the
+     * database file lock.
+     */
+    public static void discard() {
+        synchronized (pendingLock) {
+            pending = null;
+            generation++;
+        }
+    }
+
+    private static Batch getBatch(Context context, SecretKey encryptionKey) {
+        // Saves with another key (after the encryption changed) go into a new batch, the old one is
+        // still written first since the executor runs everything in order
+        if (pending != null && pending.encryptionKey != encryptionKey) {
+            final Batch previous = pending;
+            executor.execute(() -> write(previous));
+            pending = null;
+        }
+
+        if (pending == null)
+            pending = new Batch(context.getApplicationContext(), encryptionKey, generation);
+
+        return pending;
+    }
+
+    private static void schedule() {
+        schedule(SAVE_DELAY_MS);
+    }
+
+    private static void schedule(long delay) {
+        if (!scheduled) {
+            scheduled = true;
+            executor.schedule(DatabaseSaver::writePending, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static void writePending() {
+        Batch batch;
+
+        synchronized (pendingLock) {
+            batch = pending;
+            pending = null;
+            scheduled = false;
+        }
+
+        if (batch != null)
+            write(batch);
+    }
+
+    private static void write(Batch batch) {
+        if (batch.database == null && batch.changes.isEmpty())
+            return;
+
+        File databaseFile = getDatabaseFile(batch.context);
+        File journalFile = new File(batch.context.getFilesDir() + "/" + Constants.FILENAME_JOURNAL);
+
+        try {
+            synchronized (DatabaseHelper.DatabaseFileLock) {
+                if (batch.generation != generation)
+                    return;
+
+                if (batch.database != null) {
+                    DatabaseCache.invalidate();
+
+                    DatabaseFileHelper.writeDatabase(databaseFile, batch.database, batch.encryptionKey);
+
+                    // All changes are part of the database now
+                    journalFile.delete();
+                }
+
+                if (!batch.changes.isEmpty()) {
+                    DatabaseCache.invalidate();
+
+                    DatabaseJournal.append(journalFile, databaseFile, batch.encryptionKey, batch.changes);
+
+                    if (journalFile.length() > Math.max(JOURNAL_COMPACTION_MIN_SIZE, databaseFile.length()))
+                        compact(databaseFile, journalFile, batch.encryptionKey);
+                }
+            }
+        } catch (Exception error) {
+            error.printStackTrace();
+            retry(batch);
+            return;
+        }
+
+        synchronized (pendingLock) {
+            failureReported = false;
+        }
+
+        BackupManager backupManager = new BackupManager(batch.context);
+        backupManager.dataChanged();
+    }
+
+    /**
+     * Puts a batch that failed to write back in front of the pending saves and schedules a retry.
+     */
+    private static void retry(Batch batch) {
+        boolean report;
+
+        synchronized (pendingLock) {
+            if (batch.generation != generation)
+                return;
+
+            if (pending == null) {
+                pending = batch;
+            } else if (pending.database == null && pending.encryptionKey == batch.encryptionKey) {
+                pending.database = batch.database;
+                pending.changes.addAll(0, batch.changes);
+            }
+            // Otherwise the failed batch is superseded: by a newer snapshot of all entries or by
+            // the database written with a new key when the encryption changed
+
+            schedule(RETRY_DELAY_MS);
+
+            report = !failureReported;
+            failureReported = true;
+        }
+
+        if (report) {
+            final Context context = batch.context;
+            new Handler(Looper.getMainLooper()).post(() ->
+                    Toast.makeText(context, R.string.toast_save_failed, Toast.LENGTH_LONG).show()
+            );
+        }
+    }
+
+    private static void compact(File databaseFile, File journalFile, SecretKey encryptionKey) {
+        try {
+            ArrayList<Entry> entries = DatabaseFileHelper.readDatabase(databaseFile, encryptionKey);
+            DatabaseJournal.replay(journalFile, databaseFile, encryptionKey, entries);
+
+            DatabaseFileHelper.writeDatabase(databaseFile, entries, encryptionKey);
+            journalFile.delete();
+        } catch (Exception error) {
+            error.printStackTrace();
+        }
+    }
+
+    private static File getDatabaseFile(Context context) {
+        return new File(context.getFilesDir() + "/" + Constants.FILENAME_DATABASE);
+    }
+}
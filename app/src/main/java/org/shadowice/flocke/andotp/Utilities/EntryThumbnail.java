@@ -35,6 +35,7 @@ import android.text.TextUtils;
 import androidx.appcompat.app.AppCompatDelegate;
 import androidx.appcompat.content.res.AppCompatResources;
 
+import org.shadowice.flocke.andotp.Database.Entry;
 import org.shadowice.flocke.andotp.R;
 
 public class EntryThumbnail {
@@ -67,6 +68,29 @@ public class EntryThumbnail {
         return BitmapFactory.decodeResource(context.getResources(), R.mipmap.ic_launcher_round);
     }
 
+    /**
+     * Resolves the thumbnails of new and loaded entries against the bundled resources
+     */
+    public static class ThumbnailResolver implements Entry.ThumbnailResolver {
+        @Override
+        public String thumbnailForIssuer(String issuer) {
+            try {
+                return EntryThumbnails.valueOfIgnoreCase(issuer).name();
+            } catch(Exception e) {
+                try {
+                    return EntryThumbnails.valueOfFuzzy(issuer).name();
+                } catch(Exception e2) {
+                    return EntryThumbnails.Default.name();
+                }
+            }
+        }
+
+        @Override
+        public String normalizeThumbnail(String name) {
+            return EntryThumbnails.fromName(name).name();
+        }
+    }
+
     private enum AssetType {
         Bitmap,
         Vector
@@ -439,6 +463,18 @@ public class EntryThumbnail {
             throw new IllegalArgumentException();
         }
 
+        public static EntryThumbnails fromName(String thumbnail) {
+            try {
+                return valueOf(thumbnail);
+            } catch(Exception e) {
+                try {
+                    return valueOfIgnoreCase(thumbnail);
+                } catch(Exception e2) {
+                    return Default;
+                }
+            }
+        }
+
         public static EntryThumbnails valueOfFuzzy(String thumbnail) {
             for (EntryThumbnails entryThumbnails : values()) {
                 Pattern re = Pattern.compile("\\b" + Pattern.quote(entryThumbnails.name()) + "\\b", Pattern.CASE_INSENSITIVE);
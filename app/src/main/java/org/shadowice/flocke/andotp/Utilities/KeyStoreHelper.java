@@ -43,11 +43,31 @@ import java.util.Calendar;
 import java.util.GregorianCalendar;
 
 import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
 import javax.security.auth.x500.X500Principal;
 
 public class KeyStoreHelper {
+    // Unwrapping the key is a private key operation in the (possibly hardware backed) key store, so
+    // the unwrapped key is kept until the app is locked
+    private static final Object keyLock = new Object();
+    private static SecretKey cachedEncryptionKey = null;
+
+    /**
+     * Drops the unwrapped key, the next call to {@link #loadEncryptionKeyFromKeyStore(Context, boolean)}
+     * unwraps it again. Called when the app is locked and when the keys are wiped.
+     */
+    public static void evictEncryptionKey() {
+        synchronized (keyLock) {
+            cachedEncryptionKey = null;
+        }
+
+        // Idle ciphers still hold the key schedules of the keys used with them
+        CipherPool.clear();
+    }
 
     public static void wipeKeys(Context context) {
+        evictEncryptionKey();
+
         File keyFile = new File(context.getFilesDir() + "/" + Constants.FILENAME_ENCRYPTED_KEY);
         keyFile.delete();
 
@@ -106,17 +126,55 @@ public class KeyStoreHelper {
 
     public static SecretKey loadEncryptionKeyFromKeyStore(Context context, boolean failSilent) {
         SecretKey encKey = null;
+        boolean failed = false;
+
+        synchronized (keyLock) {
+            if (cachedEncryptionKey != null)
+                return cachedEncryptionKey;
+
+            try {
+                KeyPair pair = KeyStoreHelper.loadOrGenerateAsymmetricKeyPair(context, Constants.KEYSTORE_ALIAS_WRAPPING);
+                if (pair != null)
+                    encKey = loadOrGenerateWrappedKey(new File(context.getFilesDir() + "/" + Constants.FILENAME_ENCRYPTED_KEY), pair);
+            } catch (GeneralSecurityException | IOException | ProviderException e) {
+                e.printStackTrace();
+                failed = true;
+            }
 
-        try {
-            KeyPair pair = KeyStoreHelper.loadOrGenerateAsymmetricKeyPair(context, Constants.KEYSTORE_ALIAS_WRAPPING);
-            if (pair != null)
-                encKey = EncryptionHelper.loadOrGenerateWrappedKey(new File(context.getFilesDir() + "/" + Constants.FILENAME_ENCRYPTED_KEY), pair);
-        } catch (GeneralSecurityException | IOException | ProviderException e) {
-            e.printStackTrace();
-            if (! failSilent)
-                UIHelper.showGenericDialog(context, R.string.dialog_title_keystore_error, R.string.dialog_msg_keystore_error);
+            cachedEncryptionKey = encKey;
         }
 
+        // Shown without holding the lock
+        if (failed && ! failSilent)
+            UIHelper.showGenericDialog(context, R.string.dialog_title_keystore_error, R.string.dialog_msg_keystore_error);
+
         return encKey;
     }
+
+    /**
+     * Load our symmetric secret key.
+     * The symmetric secret key is stored securely on disk by wrapping
+     * it with a public/private key pair, possibly backed by hardware.
+     */
+    public static SecretKey loadOrGenerateWrappedKey(File keyFile, KeyPair keyPair)
+            throws GeneralSecurityException, IOException {
+        final SecretKeyWrapper wrapper = new SecretKeyWrapper(keyPair);
+
+        // Generate secret key if none exists
+        if (!keyFile.exists()) {
+            final byte[] raw = EncryptionHelper.generateRandom(Constants.ENCRYPTION_KEY_LENGTH);
+
+            final SecretKey key = new SecretKeySpec(raw, "AES");
+            final byte[] wrapped = wrapper.wrap(key);
+
+
+            FileHelper.writeBytesToFile(keyFile, wrapped);
+        }
+
+        // Even if we just generated the key, always read it back to ensure we
+        // can read it successfully.
+        final byte[] wrapped = FileHelper.readFileToBytes(keyFile);
+
+        return wrapper.unwrap(wrapped);
+    }
 }
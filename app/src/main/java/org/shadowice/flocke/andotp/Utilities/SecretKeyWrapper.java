@@ -17,8 +17,6 @@
 
 package org.shadowice.flocke.andotp.Utilities;
 
-import android.annotation.SuppressLint;
-
 import java.io.IOException;
 import java.security.GeneralSecurityException;
 import java.security.KeyPair;
@@ -35,20 +33,17 @@ import javax.crypto.SecretKey;
  * See <a href="http://en.wikipedia.org/wiki/Key_Wrap">key wrapping</a> for more
  * details.
  * <p>
- * Not inherently thread safe.
+ * The ciphers are taken from the pool of the calling thread.
  */
 public class SecretKeyWrapper {
-    private final Cipher mCipher;
     private final KeyPair mPair;
 
     /**
      * Create a wrapper using the public/private key pair with the given alias.
      * If no pair with that alias exists, it will be generated.
      */
-    @SuppressLint("GetInstance")
     public SecretKeyWrapper(KeyPair keyPair)
             throws GeneralSecurityException, IOException {
-        mCipher = Cipher.getInstance(Constants.ALGORITHM_ASYMMETRIC);
         mPair = keyPair;
     }
 
@@ -62,8 +57,14 @@ public class SecretKeyWrapper {
      */
     public byte[] wrap(SecretKey key)
             throws GeneralSecurityException {
-        mCipher.init(Cipher.WRAP_MODE, mPair.getPublic());
-        return mCipher.wrap(key);
+        Cipher cipher = CipherPool.obtain(Constants.ALGORITHM_ASYMMETRIC, mPair.getPublic());
+
+        try {
+            cipher.init(Cipher.WRAP_MODE, mPair.getPublic());
+            return cipher.wrap(key);
+        } finally {
+            CipherPool.release(Constants.ALGORITHM_ASYMMETRIC, mPair.getPublic(), cipher);
+        }
     }
 
     /**
@@ -75,8 +76,14 @@ public class SecretKeyWrapper {
      */
     public SecretKey unwrap(byte[] blob)
             throws GeneralSecurityException {
-        mCipher.init(Cipher.UNWRAP_MODE, mPair.getPrivate());
+        Cipher cipher = CipherPool.obtain(Constants.ALGORITHM_ASYMMETRIC, mPair.getPrivate());
+
+        try {
+            cipher.init(Cipher.UNWRAP_MODE, mPair.getPrivate());
 
-        return (SecretKey) mCipher.unwrap(blob, "AES", Cipher.SECRET_KEY);
+            return (SecretKey) cipher.unwrap(blob, "AES", Cipher.SECRET_KEY);
+        } finally {
+            CipherPool.release(Constants.ALGORITHM_ASYMMETRIC, mPair.getPrivate(), cipher);
+        }
     }
 }
\ No newline at end of file
@@ -588,6 +588,10 @@ public class Settings {
         return getBoolean(R.string.settings_key_backup_append_date_time, true);
     }
 
+    public boolean getIsChunkedBackupEnabled() {
+        return getBoolean(R.string.settings_key_backup_chunked, false);
+    }
+
     public int getAuthInactivityDelay() {
         return getIntValue(R.string.settings_key_auth_inactivity_delay, 0);
     }
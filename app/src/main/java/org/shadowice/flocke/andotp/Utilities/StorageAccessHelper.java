@@ -10,6 +10,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 
 public class StorageAccessHelper {
@@ -32,6 +33,24 @@ public class StorageAccessHelper {
         return success;
     }
 
+    public static OutputStream openOutputStream(Context context, Uri file) throws IOException {
+        OutputStream outputStream = context.getContentResolver().openOutputStream(file, "w");
+
+        if (outputStream == null)
+            throw new IOException("Failed to open " + file);
+
+        return outputStream;
+    }
+
+    public static InputStream openInputStream(Context context, Uri file) throws IOException {
+        InputStream inputStream = context.getContentResolver().openInputStream(file);
+
+        if (inputStream == null)
+            throw new IOException("Failed to open " + file);
+
+        return inputStream;
+    }
+
     public static String getContentFileName(Context context, Uri uri) {
         String result = null;
         if (uri.getScheme().equals("content")) {
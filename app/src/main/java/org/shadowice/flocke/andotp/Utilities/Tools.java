@@ -37,7 +37,6 @@ import android.widget.Toast;
 import org.shadowice.flocke.andotp.R;
 
 import java.text.DateFormat;
-import java.text.NumberFormat;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
@@ -91,14 +90,6 @@ public class Tools {
         }
     }
 
-    public static String formatTokenString(int token, int digits) {
-        NumberFormat numberFormat = NumberFormat.getInstance(Locale.ENGLISH);
-        numberFormat.setMinimumIntegerDigits(digits);
-        numberFormat.setGroupingUsed(false);
-
-        return numberFormat.format(token);
-    }
-
     public static String formatToken(String s, int chunkSize) {
         if (chunkSize ==0 || s == null)
             return s;
@@ -29,10 +29,10 @@ import android.content.DialogInterface;
 import android.content.Intent;
 import android.graphics.Bitmap;
 import android.graphics.drawable.BitmapDrawable;
-import android.net.Uri;
 import android.os.Handler;
 import androidx.annotation.NonNull;
 import androidx.appcompat.widget.PopupMenu;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
 import android.os.Looper;
@@ -68,9 +68,15 @@ import org.shadowice.flocke.andotp.Tasks.BackupTaskResult;
 import org.shadowice.flocke.andotp.Tasks.EncryptedBackupTask;
 import org.shadowice.flocke.andotp.Utilities.BackupHelper;
 import org.shadowice.flocke.andotp.Utilities.Constants;
+import org.shadowice.flocke.andotp.Utilities.DatabaseFileHelper;
 import org.shadowice.flocke.andotp.Utilities.DatabaseHelper;
+import org.shadowice.flocke.andotp.Utilities.DatabaseJournal;
+import org.shadowice.flocke.andotp.Utilities.DatabaseSaver;
 import org.shadowice.flocke.andotp.Utilities.EntryThumbnail;
 import org.shadowice.flocke.andotp.Utilities.Settings;
+import org.shadowice.flocke.andotp.Utilities.TokenCalculator;
+import org.shadowice.flocke.andotp.Utilities.TokenLookahead;
+import org.shadowice.flocke.andotp.Utilities.TokenScheduler;
 import org.shadowice.flocke.andotp.Utilities.Tools;
 import org.shadowice.flocke.andotp.Utilities.UIHelper;
 import org.shadowice.flocke.andotp.View.ItemTouchHelper.ItemTouchHelperAdapter;
@@ -79,6 +85,8 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import javax.crypto.SecretKey;
 
@@ -99,6 +107,27 @@ public class EntriesCardAdapter extends RecyclerView.Adapter<EntryViewHolder>
     private SortMode sortMode = SortMode.UNSORTED;
     private final TagsAdapter tagsFilterAdapter;
     private final Settings settings;
+    private EntryViewHolder.TokenSettings tokenSettings;
+    private final TokenLookahead tokenLookahead = new TokenLookahead();
+
+    // Diffs of the displayed entries are calculated here and dispatched on the main thread
+    private static final ExecutorService diffExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "EntriesDiff");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final HashMap<Long, EntryDiffCallback.State> boundStates = new HashMap<>();
+    private ArrayList<Entry> pendingEntries = null;
+    private int displayGeneration = 0;
+
+    // The database is decrypted and read here, the entries are published on the main thread
+    private static final ExecutorService loadExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "EntriesLoader");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private int loadGeneration = 0;
+    private boolean loading = false;
 
     private static final int ESTABLISH_PIN_MENU_INDEX = 4;
 
@@ -106,6 +135,7 @@ public class EntriesCardAdapter extends RecyclerView.Adapter<EntryViewHolder>
         this.context = context;
         this.tagsFilterAdapter = tagsFilterAdapter;
         this.settings = new Settings(context);
+        this.tokenSettings = new EntryViewHolder.TokenSettings(settings);
         this.taskHandler = new Handler(Looper.getMainLooper());
         this.entries = new EntryList();
 
@@ -135,18 +165,19 @@ public class EntriesCardAdapter extends RecyclerView.Adapter<EntryViewHolder>
     }
 
     public void saveAndRefresh(boolean auto_backup) {
-        saveAndRefresh(auto_backup, RecyclerView.NO_POSITION);
-    }
-
-    public void saveAndRefresh(boolean auto_backup, int itemPos) {
         updateTagsFilter();
-        entriesChanged(itemPos);
+        entriesChanged();
         saveEntries(auto_backup);
     }
 
     public void addEntry(Entry e) {
+        if (!checkNotLoading())
+            return;
+
         if (entries.addEntry(e)) {
-            saveAndRefresh(settings.getAutoBackupEncryptedPasswordsEnabled());
+            updateTagsFilter();
+            entriesChanged();
+            saveEntryChange(DatabaseJournal.Change.add(e), settings.getAutoBackupEncryptedPasswordsEnabled());
         } else {
             Toast.makeText(context, R.string.toast_entry_exists, Toast.LENGTH_LONG).show();
         }
@@ -156,32 +187,79 @@ public class EntriesCardAdapter extends RecyclerView.Adapter<EntryViewHolder>
         return entries.indexOf(displayedEntries.get(displayPosition));
     }
 
-    private void entriesChanged(int itemPos) {
-        displayedEntries = entries.getEntriesSorted(sortMode);
+    private void entriesChanged() {
         filterByTags(tagsFilter);
+    }
+
+    /**
+     * Replaces the displayed entries, the changes to the old list are calculated in the background
+     * and only the cards that actually changed are notified. Until then the old list stays in place,
+     * so positions handed out by the RecyclerView keep pointing to the right entries.
+     *
+     * @param newEntries List of entries to display
+     */
+    private void setDisplayedEntries(final ArrayList<Entry> newEntries) {
+        final int generation = ++displayGeneration;
+
+        if (displayedEntries == null || displayedEntries.isEmpty() || newEntries.isEmpty()) {
+            pendingEntries = null;
+            displayedEntries = newEntries;
+            notifyDataSetChanged();
+            return;
+        }
+
+        // Compare against what the cards show right now, the entries themselves are edited in place
+        final EntryDiffCallback.State[] oldStates = new EntryDiffCallback.State[displayedEntries.size()];
+        for (int i = 0; i < oldStates.length; i++) {
+            Entry e = displayedEntries.get(i);
+            EntryDiffCallback.State bound = boundStates.get(e.getListId());
+            oldStates[i] = bound != null ? bound : new EntryDiffCallback.State(e);
+        }
+
+        final EntryDiffCallback.State[] newStates = new EntryDiffCallback.State[newEntries.size()];
+        for (int i = 0; i < newStates.length; i++)
+            newStates[i] = new EntryDiffCallback.State(newEntries.get(i));
 
-        if (itemPos == RecyclerView.NO_POSITION)
+        pendingEntries = newEntries;
+
+        diffExecutor.execute(() -> {
+            final DiffUtil.DiffResult result = DiffUtil.calculateDiff(new EntryDiffCallback(oldStates, newStates));
+
+            taskHandler.post(() -> {
+                // A newer list was set in the meantime
+                if (generation != displayGeneration)
+                    return;
+
+                pendingEntries = null;
+                displayedEntries = newEntries;
+                result.dispatchUpdatesTo(EntriesCardAdapter.this);
+            });
+        });
+    }
+
+    // Applies a list that is still being diffed right away, needed before modifying the displayed list directly
+    private void flushDisplayedEntries() {
+        if (pendingEntries != null) {
+            displayGeneration++;
+            displayedEntries = pendingEntries;
+            pendingEntries = null;
             notifyDataSetChanged();
-        else
-            notifyItemChanged(itemPos);
+        }
     }
 
     public void updateTagsFilter() {
-        List<String> inUseTags = getTags();
-
         HashMap<String, Boolean> tagsHashMap = new HashMap<>();
         for(String tag: tagsFilterAdapter.getTags()) {
-            if(inUseTags.contains(tag))
+            if(entries.hasTag(tag))
                 tagsHashMap.put(tag, false);
         }
         for(String tag: tagsFilterAdapter.getActiveTags()) {
-            if(inUseTags.contains(tag))
+            if(entries.hasTag(tag))
                 tagsHashMap.put(tag, true);
         }
         for(String tag: getTags()) {
-            if(inUseTags.contains(tag))
-                if(!tagsHashMap.containsKey(tag))
-                    tagsHashMap.put(tag, true);
+            if(!tagsHashMap.containsKey(tag))
+                tagsHashMap.put(tag, true);
         }
 
         tagsFilterAdapter.setTags(tagsHashMap);
@@ -189,8 +267,20 @@ public class EntriesCardAdapter extends RecyclerView.Adapter<EntryViewHolder>
     }
 
     public void saveEntries(boolean auto_backup) {
-        DatabaseHelper.saveDatabase(context, entries.getEntries(), encryptionKey);
+        DatabaseSaver.saveDatabase(context, entries.getEntries(), encryptionKey);
+
+        autoBackup(auto_backup);
+    }
+
+    // Only appends the change to the journal, falls back to saving all entries if that fails
+    private void saveEntryChange(DatabaseJournal.Change change, boolean auto_backup) {
+        if (!DatabaseSaver.saveDatabaseChange(context, change, encryptionKey))
+            DatabaseSaver.saveDatabase(context, entries.getEntries(), encryptionKey);
 
+        autoBackup(auto_backup);
+    }
+
+    private void autoBackup(boolean auto_backup) {
         if(auto_backup && BackupHelper.autoBackupType(context) == Constants.BackupType.ENCRYPTED) {
             EncryptedBackupTask task = new EncryptedBackupTask(context, entries.getEntries(), settings.getBackupPasswordEnc(), null);
             task.setCallback(this::handleTaskResult);
@@ -208,42 +298,152 @@ public class EntriesCardAdapter extends RecyclerView.Adapter<EntryViewHolder>
     }
 
     public void loadEntries() {
-        if (encryptionKey != null) {
-            ArrayList<Entry> newEntries = DatabaseHelper.loadDatabase(context, encryptionKey);
+        loadEntries(null);
+    }
 
-            entries.updateEntries(newEntries, true);
-            entriesChanged(RecyclerView.NO_POSITION);
-        }
+    /**
+     * Loads the entries in the background. If no entries are displayed yet (e.g. right after
+     * unlocking) they are displayed in batches while the database is still being read.
+     *
+     * @param onLoaded Run on the main thread once all entries are loaded, can be null
+     */
+    public void loadEntries(final Runnable onLoaded) {
+        if (encryptionKey == null)
+            return;
+
+        final int generation = ++loadGeneration;
+        final SecretKey key = encryptionKey;
+        final boolean progressive = entries.getEntries().isEmpty();
+
+        loading = true;
+
+        loadExecutor.execute(() -> {
+            DatabaseFileHelper.ReadListener listener = null;
+
+            if (progressive) {
+                listener = batch -> taskHandler.post(() -> {
+                    if (generation != loadGeneration)
+                        return;
+
+                    for (Entry e : batch)
+                        entries.addEntry(e, true);
+
+                    entriesChanged();
+                });
+            }
+
+            final ArrayList<Entry> newEntries = DatabaseHelper.loadDatabase(context, key, listener);
+
+            taskHandler.post(() -> {
+                // Loading was started again in the meantime
+                if (generation != loadGeneration)
+                    return;
+
+                loading = false;
+
+                entries.updateEntries(newEntries, true);
+                entriesChanged();
+
+                if (onLoaded != null)
+                    onLoaded.run();
+            });
+        });
+    }
+
+    // Changes made while loading would be replaced by the loaded entries
+    private boolean checkNotLoading() {
+        if (loading)
+            Toast.makeText(context, R.string.toast_entries_loading, Toast.LENGTH_SHORT).show();
+
+        return !loading;
     }
 
     public void filterByTags(List<String> tags) {
-        displayedEntries = entries.getEntriesFilteredByTags(tags, settings.getNoTagsToggle(), settings.getTagFunctionality(), sortMode);
         tagsFilter = tags;
 
+        setDisplayedEntries(entries.getEntriesFilteredByTags(tags, settings.getNoTagsToggle(), settings.getTagFunctionality(), sortMode));
+    }
+
+    /**
+     * Reads the display settings again and binds all cards with them.
+     */
+    public void refreshSettings() {
+        tokenSettings = new EntryViewHolder.TokenSettings(settings);
         notifyDataSetChanged();
     }
 
-    public void updateTimeBasedTokens() {
-        boolean change = false;
+    /**
+     * Updates the tokens and highlighting of all displayed entries for the given time and only
+     * notifies the positions that actually changed.
+     *
+     * @param time Current time (in seconds since the epoch)
+     */
+    public void updateTimeBasedTokens(long time) {
+        // Entries that are not displayed right now are updated when they are bound again
+        ArrayList<Integer> changed = TokenCalculator.computeAll(displayedEntries, time);
+
+        // Prepare the next window in the background so the rollover only swaps in the new tokens
+        tokenLookahead.schedule(displayedEntries, time);
+
+        // The cards changed below are bound with the settings of this pass
+        tokenSettings = new EntryViewHolder.TokenSettings(settings);
+
+        boolean tapToReveal = settings.getTapToReveal();
+        boolean highlightToken = settings.isHighlightTokenOptionEnabled();
+
+        int nextChanged = 0;
+
+        for (int i = 0; i < displayedEntries.size(); i++) {
+            Entry e = displayedEntries.get(i);
+
+            boolean item_changed = nextChanged < changed.size() && changed.get(nextChanged) == i;
+            if (item_changed)
+                nextChanged++;
 
-        for (Entry e : entries.getEntries()) {
-            if (e.isTimeBased()) {
-                boolean cardVisible = !settings.getTapToReveal() || e.isVisible();
+            boolean color_changed = false;
 
-                boolean item_changed = e.updateOTP(false);
-                boolean color_changed = false;
+            // Check color change only if highlighting token feature is enabled and the entry is visible
+            if (highlightToken && e.isTimeBased())
+                color_changed = (!tapToReveal || e.isVisible()) && e.hasColorChanged(time);
 
-                // Check color change only if highlighting token feature is enabled and the entry is visible
-                if(settings.isHighlightTokenOptionEnabled())
-                    color_changed = cardVisible && e.hasColorChanged();
+            if (item_changed)
+                notifyItemChanged(i, EntryDiffCallback.PAYLOAD_TOKEN);
+            else if (color_changed)
+                notifyItemChanged(i, EntryDiffCallback.PAYLOAD_COLOR);
+        }
+    }
+
+    /**
+     * @param time Current time (in seconds since the epoch)
+     * @return Time of the next required call to {@link #updateTimeBasedTokens(long)} (in seconds since the epoch)
+     */
+    public long getNextTokenUpdate(long time) {
+        return TokenScheduler.getNextUpdate(displayedEntries, time, settings.isHighlightTokenOptionEnabled());
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull EntryViewHolder entryViewHolder, int i, @NonNull List<Object> payloads) {
+        if (payloads.isEmpty()) {
+            onBindViewHolder(entryViewHolder, i);
+            return;
+        }
 
-                change = change || item_changed || color_changed ||
-                        (cardVisible && (e.hasNonDefaultPeriod() || settings.isShowIndividualTimeoutsEnabled()));
+        Entry entry = displayedEntries.get(i);
+
+        for (Object payload : payloads) {
+            if (EntryDiffCallback.PAYLOAD_TOKEN.equals(payload)) {
+                entryViewHolder.updateToken(entry, tokenSettings);
+                entryViewHolder.updateProgressBar(entry, tokenSettings);
+            } else if (EntryDiffCallback.PAYLOAD_PROGRESS.equals(payload)) {
+                entryViewHolder.updateProgressBar(entry, tokenSettings);
             }
         }
 
-        if (change)
-            notifyDataSetChanged();
+        // The color depends on the time, so it is always refreshed with the token
+        if(settings.isHighlightTokenOptionEnabled())
+            entryViewHolder.updateColor(entry.getColor());
+
+        boundStates.put(entry.getListId(), new EntryDiffCallback.State(entry));
     }
 
     @Override
@@ -256,13 +456,20 @@ public class EntriesCardAdapter extends RecyclerView.Adapter<EntryViewHolder>
         if(settings.isHighlightTokenOptionEnabled())
             entryViewHolder.updateColor(entry.getColor());
 
-        entryViewHolder.updateValues(entry);
+        entryViewHolder.updateValues(entry, settings, tokenSettings);
 
         entryViewHolder.setLabelSize(settings.getLabelSize());
         entryViewHolder.setLabelScroll(settings.getLabelDisplay(), settings.getCardLayout());
 
         if(settings.getThumbnailVisible())
             entryViewHolder.setThumbnailSize(settings.getThumbnailSize());
+
+        boundStates.put(entry.getListId(), new EntryDiffCallback.State(entry));
+    }
+
+    @Override
+    public void onViewRecycled(@NonNull EntryViewHolder entryViewHolder) {
+        boundStates.remove(entryViewHolder.getItemId());
     }
 
     @Override @NonNull
@@ -402,6 +609,9 @@ public class EntriesCardAdapter extends RecyclerView.Adapter<EntryViewHolder>
     }
 
     private void updateEntry(Entry entry, Entry realEntry, final int position) {
+        if (!checkNotLoading())
+            return;
+
         long counter = entry.getCounter() + 1;
 
         entry.setCounter(counter);
@@ -411,7 +621,7 @@ public class EntriesCardAdapter extends RecyclerView.Adapter<EntryViewHolder>
         realEntry.setCounter(counter);
         realEntry.updateOTP(false);
         
-        saveEntries(settings.getAutoBackupEncryptedFullEnabled());
+        saveEntryChange(DatabaseJournal.Change.update(entries.indexOf(realEntry), realEntry), settings.getAutoBackupEncryptedFullEnabled());
     }
 
     private void hideEntry(Entry entry) {
@@ -435,6 +645,9 @@ public class EntriesCardAdapter extends RecyclerView.Adapter<EntryViewHolder>
     }
 
     private void setCounter(final int pos) {
+        if (!checkNotLoading())
+            return;
+
         AlertDialog.Builder builder = new AlertDialog.Builder(context);
 
         int marginSmall = context.getResources().getDimensionPixelSize(R.dimen.activity_margin_small);
@@ -462,7 +675,7 @@ public class EntriesCardAdapter extends RecyclerView.Adapter<EntryViewHolder>
                     Entry e = entries.getEntry(realIndex);
                     e.setCounter(newCounter);
 
-                    saveEntries(settings.getAutoBackupEncryptedFullEnabled());
+                    saveEntryChange(DatabaseJournal.Change.update(realIndex, e), settings.getAutoBackupEncryptedFullEnabled());
                 })
                 .setNegativeButton(android.R.string.cancel, (dialogInterface, i) -> {})
                 .create();
@@ -511,15 +724,16 @@ public class EntriesCardAdapter extends RecyclerView.Adapter<EntryViewHolder>
 
         entries.getEntry(realIndex).setLastUsed(timeStamp);
         entries.getEntry(realIndex).setUsedFrequency(entryUsedFrequency + 1);
-        saveEntries(false);
+
+        // Only statistics, not worth bothering while loading
+        if (!loading)
+            saveEntryChange(DatabaseJournal.Change.update(realIndex, entries.getEntry(realIndex)), false);
 
         if (sortMode == SortMode.LAST_USED) {
-            displayedEntries = EntryList.sortEntries(displayedEntries, sortMode);
-            notifyDataSetChanged();
+            setDisplayedEntries(EntryList.sortEntries(displayedEntries, sortMode));
             return false;
         } else if (sortMode == SortMode.MOST_USED) {
-            displayedEntries = EntryList.sortEntries(displayedEntries, sortMode);
-            notifyDataSetChanged();
+            setDisplayedEntries(EntryList.sortEntries(displayedEntries, sortMode));
             return false;
         }
 
@@ -528,19 +742,25 @@ public class EntriesCardAdapter extends RecyclerView.Adapter<EntryViewHolder>
 
     @Override
     public boolean onItemMove(int fromPosition, int toPosition) {
-        if (sortMode == SortMode.UNSORTED && entries.isEqual(displayedEntries)) {
+        // Dragging needs the moves to be notified immediately
+        flushDisplayedEntries();
+
+        if (sortMode == SortMode.UNSORTED && !loading && entries.isEqual(displayedEntries)) {
             entries.swapEntries(fromPosition, toPosition);
 
             displayedEntries = entries.getEntries();
             notifyItemMoved(fromPosition, toPosition);
 
-            saveEntries(false);
+            saveEntryChange(DatabaseJournal.Change.swap(fromPosition, toPosition), false);
         }
 
         return true;
     }
 
     public void changeThumbnail(final int pos) {
+        if (!checkNotLoading())
+            return;
+
         AlertDialog.Builder builder = new AlertDialog.Builder(context);
 
         int marginSmall = context.getResources().getDimensionPixelSize(R.dimen.activity_margin_small);
@@ -608,9 +828,9 @@ public class EntriesCardAdapter extends RecyclerView.Adapter<EntryViewHolder>
             }
 
             Entry e = entries.getEntry(realIndex1);
-            e.setThumbnail(thumbnail);
+            e.setThumbnail(thumbnail.name());
 
-            saveEntries(settings.getAutoBackupEncryptedFullEnabled());
+            saveEntryChange(DatabaseJournal.Change.update(realIndex1, e), settings.getAutoBackupEncryptedFullEnabled());
             notifyItemChanged(pos);
             alert.cancel();
         });
@@ -658,21 +878,33 @@ public class EntriesCardAdapter extends RecyclerView.Adapter<EntryViewHolder>
 
     @SuppressLint("StringFormatInvalid")
     public void removeItem(final int pos) {
+        if (!checkNotLoading())
+            return;
+
         AlertDialog.Builder builder = new AlertDialog.Builder(context);
 
-        String label = displayedEntries.get(pos).getLabel();
-        String message = context.getString(R.string.dialog_msg_confirm_delete, label);
+        final Entry entry = displayedEntries.get(pos);
+        String message = context.getString(R.string.dialog_msg_confirm_delete, entry.getLabel());
 
         builder.setTitle(R.string.dialog_title_remove)
                 .setMessage(message)
                 .setPositiveButton(R.string.yes, (dialogInterface, i) -> {
-                    int realIndex = getRealIndex(pos);
+                    // The displayed list might have changed while the dialog was open
+                    flushDisplayedEntries();
+
+                    int realIndex = entries.indexOf(entry);
+                    if (realIndex < 0)
+                        return;
 
-                    displayedEntries.remove(pos);
-                    notifyItemRemoved(pos);
+                    int displayIndex = displayedEntries.indexOf(entry);
+                    if (displayIndex >= 0) {
+                        displayedEntries.remove(displayIndex);
+                        notifyItemRemoved(displayIndex);
+                    }
 
                     entries.removeEntry(realIndex);
-                    saveEntries(settings.getAutoBackupEncryptedFullEnabled());
+
+                    saveEntryChange(DatabaseJournal.Change.remove(realIndex), settings.getAutoBackupEncryptedFullEnabled());
                 })
                 .setNegativeButton(R.string.no, (dialogInterface, i) -> {})
                 .show();
@@ -692,11 +924,11 @@ public class EntriesCardAdapter extends RecyclerView.Adapter<EntryViewHolder>
     }
 
     private void showQRCode(final int pos) {
-        Uri uri = displayedEntries.get(pos).toUri();
+        String uri = displayedEntries.get(pos).toUri();
         if (uri != null) {
             Bitmap bitmap;
             try {
-                bitmap = new BarcodeEncoder().encodeBitmap(uri.toString(), BarcodeFormat.QR_CODE, 0, 0);
+                bitmap = new BarcodeEncoder().encodeBitmap(uri, BarcodeFormat.QR_CODE, 0, 0);
             } catch(Exception ignored) {
                 Toast.makeText(context, R.string.toast_qr_failed_to_generate, Toast.LENGTH_LONG).show();
                 return;
@@ -735,7 +967,8 @@ public class EntriesCardAdapter extends RecyclerView.Adapter<EntryViewHolder>
             int id = item.getItemId();
 
             if (id == R.id.menu_popup_edit) {
-                ManualEntryDialog.show((MainActivity) context, settings, EntriesCardAdapter.this, entries.getEntry(getRealIndex(pos)), () -> saveAndRefresh(settings.getAutoBackupEncryptedFullEnabled(), pos));
+                if (checkNotLoading())
+                    ManualEntryDialog.show((MainActivity) context, settings, EntriesCardAdapter.this, entries.getEntry(getRealIndex(pos)), () -> saveAndRefresh(settings.getAutoBackupEncryptedFullEnabled()));
                 return true;
             } else if(id == R.id.menu_popup_changeImage) {
                 changeThumbnail(pos);
@@ -761,7 +994,7 @@ public class EntriesCardAdapter extends RecyclerView.Adapter<EntryViewHolder>
 
     public void setSortMode(SortMode mode) {
         this.sortMode = mode;
-        entriesChanged(RecyclerView.NO_POSITION);
+        entriesChanged();
     }
 
     public SortMode getSortMode() {
@@ -790,10 +1023,11 @@ public class EntriesCardAdapter extends RecyclerView.Adapter<EntryViewHolder>
 
     public class EntryFilter extends Filter {
         private final List<Constants.SearchIncludes> filterValues = settings.getSearchValues();
+        private final EntryList.SearchSession searchSession = entries.newSearchSession();
 
         @Override
         protected FilterResults performFiltering(CharSequence constraint) {
-            ArrayList<Entry> filtered = entries.getFilteredEntries(constraint, filterValues, sortMode);
+            ArrayList<Entry> filtered = searchSession.getFilteredEntries(constraint, filterValues, sortMode);
 
             final FilterResults filterResults = new FilterResults();
             filterResults.count = filtered.size();
@@ -805,8 +1039,7 @@ public class EntriesCardAdapter extends RecyclerView.Adapter<EntryViewHolder>
         @Override
         @SuppressWarnings("unchecked")
         protected void publishResults(CharSequence constraint, @NonNull FilterResults results) {
-            displayedEntries = (ArrayList<Entry>) results.values;
-            notifyDataSetChanged();
+            setDisplayedEntries((ArrayList<Entry>) results.values);
         }
     }
 
@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2017-2020 Jakob Nixdorf
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.shadowice.flocke.andotp.View;
+
+import androidx.recyclerview.widget.DiffUtil;
+
+import org.shadowice.flocke.andotp.Database.Entry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Compares two lists of card states by the list ID of their entries. The entries themselves are
+ * edited in place, so the diff works on immutable snapshots (see {@link State}) that are taken on
+ * the main thread and can then safely be compared on a background thread.
+ */
+public class EntryDiffCallback extends DiffUtil.Callback {
+    public static final String PAYLOAD_TOKEN = "token";
+    public static final String PAYLOAD_COLOR = "color";
+    public static final String PAYLOAD_PROGRESS = "progress";
+
+    private final State[] oldStates;
+    private final State[] newStates;
+
+    public EntryDiffCallback(State[] oldStates, State[] newStates) {
+        this.oldStates = oldStates;
+        this.newStates = newStates;
+    }
+
+    @Override
+    public int getOldListSize() {
+        return oldStates.length;
+    }
+
+    @Override
+    public int getNewListSize() {
+        return newStates.length;
+    }
+
+    @Override
+    public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+        return oldStates[oldItemPosition].listId == newStates[newItemPosition].listId;
+    }
+
+    @Override
+    public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+        State oldState = oldStates[oldItemPosition];
+        State newState = newStates[newItemPosition];
+
+        return oldState != null && oldState.equals(newState);
+    }
+
+    @Override
+    public Object getChangePayload(int oldItemPosition, int newItemPosition) {
+        State oldState = oldStates[oldItemPosition];
+        State newState = newStates[newItemPosition];
+
+        // Entries that were never bound or changed more than their token need a full bind
+        if (oldState == null || !oldState.equalsContent(newState))
+            return null;
+
+        if (!oldState.equalsToken(newState))
+            return PAYLOAD_TOKEN;
+        else if (oldState.color != newState.color)
+            return PAYLOAD_COLOR;
+        else
+            return PAYLOAD_PROGRESS;
+    }
+
+    /**
+     * Everything a card shows of an entry at the time it was bound.
+     */
+    public static class State {
+        private final long listId;
+        private final Entry.OTPType type;
+        private final String issuer;
+        private final String label;
+        private final List<String> tags;
+        private final String thumbnail;
+        private final long counter;
+        private final int period;
+        private final boolean visible;
+
+        private final String currentOTP;
+        private final String prevOTP;
+        private final long lastUpdate;
+        private final int color;
+
+        public State(Entry entry) {
+            this.listId = entry.getListId();
+            this.type = entry.getType();
+            this.issuer = entry.getIssuer();
+            this.label = entry.getLabel();
+            this.tags = new ArrayList<>(entry.getTags());
+            this.thumbnail = entry.getThumbnail();
+            this.counter = entry.getCounter();
+            this.period = entry.getPeriod();
+            this.visible = entry.isVisible();
+
+            this.currentOTP = entry.getCurrentOTP();
+            this.prevOTP = entry.getPrevOTP();
+            this.lastUpdate = entry.getLastUpdate();
+            this.color = entry.getColor();
+        }
+
+        public long getListId() {
+            return listId;
+        }
+
+        private boolean equalsContent(State other) {
+            return listId == other.listId && type == other.type && counter == other.counter &&
+                    period == other.period && visible == other.visible &&
+                    Objects.equals(issuer, other.issuer) && Objects.equals(label, other.label) &&
+                    Objects.equals(tags, other.tags) && Objects.equals(thumbnail, other.thumbnail);
+        }
+
+        private boolean equalsToken(State other) {
+            return Objects.equals(currentOTP, other.currentOTP) && Objects.equals(prevOTP, other.prevOTP);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            State other = (State) o;
+            return equalsContent(other) && equalsToken(other) &&
+                    lastUpdate == other.lastUpdate && color == other.color;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(listId, currentOTP, lastUpdate, color);
+        }
+    }
+}
@@ -78,6 +78,23 @@ public class EntryViewHolder extends RecyclerView.ViewHolder
     private final TextView counter;
     private final TextView tags;
     private final MaterialProgressBar progressBar;
+    private ObjectAnimator progressAnimation = null;
+
+    /**
+     * Settings that change how the tokens are shown, the adapter reads them once per display pass
+     * instead of every card reading them again on every token change.
+     */
+    public static class TokenSettings {
+        final int splitGroupSize;
+        final boolean showPrevToken;
+        final boolean showIndividualTimeouts;
+
+        public TokenSettings(Settings settings) {
+            this.splitGroupSize = settings.getTokenSplitGroupSize();
+            this.showPrevToken = settings.getShowPrevToken();
+            this.showIndividualTimeouts = settings.isShowIndividualTimeoutsEnabled();
+        }
+    }
 
     public EntryViewHolder(Context context, final View v, boolean tapToReveal) {
         super(v);
@@ -166,9 +183,7 @@ public class EntryViewHolder extends RecyclerView.ViewHolder
         }
     }
 
-    public void updateValues(Entry entry) {
-        Settings settings = new Settings(context);
-
+    public void updateValues(Entry entry, Settings settings, TokenSettings tokenSettings) {
         if (entry.getType() == Entry.OTPType.HOTP) {
             counterLayout.setVisibility(View.VISIBLE);
             counter.setText(String.format(Locale.ENGLISH, "%d", entry.getCounter()));
@@ -176,8 +191,6 @@ public class EntryViewHolder extends RecyclerView.ViewHolder
             counterLayout.setVisibility(View.GONE);
         }
 
-        final String tokenFormatted = Tools.formatToken(entry.getCurrentOTP(), settings.getTokenSplitGroupSize());
-
         String issuerText = entry.getIssuer();
         String labelText = entry.getLabel();
 
@@ -216,24 +229,7 @@ public class EntryViewHolder extends RecyclerView.ViewHolder
         copyButton.setContentDescription(context.getString(R.string.button_card_copy_format, contentHint));
         menuButton.setContentDescription(context.getString(R.string.button_card_options_format, contentHint));
 
-        value.setText(tokenFormatted);
-        // save the unformatted token to the tag of this TextView for copy/paste
-        value.setTag(entry.getCurrentOTP());
-
-        if (settings.getShowPrevToken()) {
-            String tokenPrev = entry.getPrevOTP();
-
-            if (tokenPrev != null && !tokenPrev.isEmpty()) {
-                String tokenFormattedPrev = Tools.formatToken(tokenPrev, settings.getTokenSplitGroupSize());
-
-                valuePrev.setVisibility(View.VISIBLE);
-                valuePrev.setText(tokenFormattedPrev);
-            } else {
-                valuePrev.setVisibility(View.GONE);
-            }
-        } else {
-            valuePrev.setVisibility(View.GONE);
-        }
+        updateToken(entry, tokenSettings);
 
         List<String> entryTags = entry.getTags();
 
@@ -251,19 +247,10 @@ public class EntryViewHolder extends RecyclerView.ViewHolder
 
         int thumbnailSize = settings.getThumbnailSize();
         if(settings.getThumbnailVisible()) {
-            thumbnailImg.setImageBitmap(EntryThumbnail.getThumbnailGraphic(context, issuerText, labelText, thumbnailSize, entry.getThumbnail()));
+            thumbnailImg.setImageBitmap(EntryThumbnail.getThumbnailGraphic(context, issuerText, labelText, thumbnailSize, EntryThumbnail.EntryThumbnails.fromName(entry.getThumbnail())));
         }
 
-        if (entry.isTimeBased() && (entry.hasNonDefaultPeriod() || settings.isShowIndividualTimeoutsEnabled())) {
-            if (!this.tapToReveal || entry.isVisible()) {
-                progressBar.setVisibility(View.VISIBLE);
-                updateProgress(entry);
-            } else {
-                progressBar.setVisibility(View.INVISIBLE);
-            }
-        } else {
-            progressBar.setVisibility(View.GONE);
-        }
+        updateProgressBar(entry, tokenSettings);
 
         if (this.tapToReveal) {
             if (entry.isVisible()) {
@@ -276,16 +263,68 @@ public class EntryViewHolder extends RecyclerView.ViewHolder
         }
     }
 
+    // Only updates the current and previous token, used when nothing else about the entry changed
+    public void updateToken(Entry entry, TokenSettings tokenSettings) {
+        final String tokenFormatted = Tools.formatToken(entry.getCurrentOTP(), tokenSettings.splitGroupSize);
+
+        value.setText(tokenFormatted);
+        // save the unformatted token to the tag of this TextView for copy/paste
+        value.setTag(entry.getCurrentOTP());
+
+        if (tokenSettings.showPrevToken) {
+            String tokenPrev = entry.getPrevOTP();
+
+            if (tokenPrev != null && !tokenPrev.isEmpty()) {
+                String tokenFormattedPrev = Tools.formatToken(tokenPrev, tokenSettings.splitGroupSize);
+
+                valuePrev.setVisibility(View.VISIBLE);
+                valuePrev.setText(tokenFormattedPrev);
+            } else {
+                valuePrev.setVisibility(View.GONE);
+            }
+        } else {
+            valuePrev.setVisibility(View.GONE);
+        }
+    }
+
+    // Shows or hides the progress bar and restarts its animation for the current window
+    public void updateProgressBar(Entry entry, TokenSettings tokenSettings) {
+        if (entry.isTimeBased() && (entry.hasNonDefaultPeriod() || tokenSettings.showIndividualTimeouts)) {
+            if (!this.tapToReveal || entry.isVisible()) {
+                progressBar.setVisibility(View.VISIBLE);
+                updateProgress(entry);
+            } else {
+                stopProgress();
+                progressBar.setVisibility(View.INVISIBLE);
+            }
+        } else {
+            stopProgress();
+            progressBar.setVisibility(View.GONE);
+        }
+    }
+
+    // Animates the progress over the whole remaining window, it is restarted when the token changes
     private void updateProgress(Entry entry) {
-        int progress =  (int) (entry.getPeriod() - (System.currentTimeMillis() / 1000) % entry.getPeriod()) ;
+        long periodMillis = entry.getPeriod() * 1000L;
+        long remaining = periodMillis - System.currentTimeMillis() % periodMillis;
+
+        if (progressAnimation != null)
+            progressAnimation.cancel();
 
         progressBar.setMax(entry.getPeriod() * 100);
-        progressBar.setProgress(progress*100);
+        progressBar.setProgress((int) (remaining / 10));
+
+        progressAnimation = ObjectAnimator.ofInt(progressBar, "progress", 0);
+        progressAnimation.setDuration(remaining * animatorDuration / 1000);
+        progressAnimation.setInterpolator(new LinearInterpolator());
+        progressAnimation.start();
+    }
 
-        ObjectAnimator animation = ObjectAnimator.ofInt(progressBar, "progress", (progress - 1) * 100);
-        animation.setDuration(animatorDuration);
-        animation.setInterpolator(new LinearInterpolator());
-        animation.start();
+    private void stopProgress() {
+        if (progressAnimation != null) {
+            progressAnimation.cancel();
+            progressAnimation = null;
+        }
     }
 
     public void setLabelSize(int size) {
@@ -0,0 +1,42 @@
+package org.shadowice.flocke.andotp.Utilities;
+
+import org.shadowice.flocke.andotp.Database.Entry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+class BenchmarkData {
+    private static final String[] ISSUERS = new String[] {
+            "ACME Co", "Example", "GitHub", "Mail Provider", "Cloud Storage", "Bank", "Forum", "Work VPN"
+    };
+
+    private static final String[] TAGS = new String[] {
+            "work", "private", "finance", "social", "dev", "shopping"
+    };
+
+    // Use a fixed seed so all runs work on the same data
+    static ArrayList<Entry> createEntries(int count) {
+        Random random = new Random(42);
+        ArrayList<Entry> entries = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            byte[] secret = new byte[20];
+            random.nextBytes(secret);
+
+            Entry entry = new Entry();
+            entry.setType(i % 10 == 0 ? Entry.OTPType.HOTP : Entry.OTPType.TOTP);
+            entry.setSecret(secret);
+            entry.setIssuer(ISSUERS[i % ISSUERS.length], false);
+            entry.setLabel("user" + i + "@example.com");
+            entry.setCounter(random.nextInt(1000));
+            entry.setTags(new ArrayList<>(Arrays.asList(TAGS[i % TAGS.length], TAGS[(i / TAGS.length) % TAGS.length])));
+            entry.setLastUsed(random.nextInt());
+            entry.setUsedFrequency(random.nextInt(100));
+
+            entries.add(entry);
+        }
+
+        return entries;
+    }
+}
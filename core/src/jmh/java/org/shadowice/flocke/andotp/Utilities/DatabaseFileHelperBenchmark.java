@@ -0,0 +1,88 @@
+package org.shadowice.flocke.andotp.Utilities;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.shadowice.flocke.andotp.Database.Entry;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.SecretKey;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DatabaseFileHelperBenchmark {
+    @Param({"10", "100", "1000", "10000"})
+    public int entryCount;
+
+    private ArrayList<Entry> entries;
+    private String json;
+    private byte[] binary;
+    private SecretKey key;
+    private File file;
+
+    @Setup
+    public void setup() throws IOException, GeneralSecurityException {
+        entries = BenchmarkData.createEntries(entryCount);
+        json = DatabaseFileHelper.entriesToString(entries);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DatabaseFileHelper.writeBinaryEntries(out, entries);
+        binary = out.toByteArray();
+
+        key = EncryptionHelper.generateSymmetricKey(EncryptionHelper.generateRandom(32));
+        file = File.createTempFile("database", ".json.aes");
+        file.deleteOnExit();
+        DatabaseFileHelper.writeDatabase(file, entries, key);
+    }
+
+    @Benchmark
+    public String entriesToString() {
+        return DatabaseFileHelper.entriesToString(entries);
+    }
+
+    @Benchmark
+    public ArrayList<Entry> stringToEntries() {
+        return DatabaseFileHelper.stringToEntries(json);
+    }
+
+    @Benchmark
+    public byte[] writeBinaryEntries() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DatabaseFileHelper.writeBinaryEntries(out, entries);
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public ArrayList<Entry> readBinaryEntries() throws IOException {
+        return DatabaseFileHelper.readBinaryEntries(new ByteArrayInputStream(binary));
+    }
+
+    @Benchmark
+    public void writeDatabase() throws IOException, GeneralSecurityException {
+        DatabaseFileHelper.writeDatabase(file, entries, key);
+    }
+
+    @Benchmark
+    public ArrayList<Entry> readDatabase() throws IOException, GeneralSecurityException {
+        return DatabaseFileHelper.readDatabase(file, key);
+    }
+}
@@ -0,0 +1,91 @@
+package org.shadowice.flocke.andotp.Utilities;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.SecretKey;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EncryptionHelperBenchmark {
+    // Size of the vault in entries, the payload is the serialized database
+    @Param({"10", "100", "1000", "10000"})
+    public int entryCount;
+
+    private SecretKey key;
+    private byte[] plainText;
+    private byte[] cipherText;
+    private byte[] chunkedCipherText;
+    private byte[] buffer;
+    private byte[] record;
+
+    @Setup
+    public void setup() throws Exception {
+        key = EncryptionHelper.generateSymmetricKey(EncryptionHelper.generateRandom(Constants.ENCRYPTION_KEY_LENGTH));
+        plainText = DatabaseFileHelper.entriesToString(BenchmarkData.createEntries(entryCount)).getBytes(StandardCharsets.UTF_8);
+        cipherText = EncryptionHelper.encrypt(key, plainText);
+        chunkedCipherText = encryptChunked();
+        buffer = new byte[8192];
+        record = DatabaseFileHelper.entriesToBytes(BenchmarkData.createEntries(1));
+    }
+
+    @Benchmark
+    public byte[] encrypt() throws Exception {
+        return EncryptionHelper.encrypt(key, plainText);
+    }
+
+    @Benchmark
+    public byte[] decrypt() throws Exception {
+        return EncryptionHelper.decrypt(key, cipherText);
+    }
+
+    // A single journal record, dominated by the per call setup of the cipher
+    @Benchmark
+    public byte[] encryptRecord() throws Exception {
+        return EncryptionHelper.encrypt(key, record);
+    }
+
+    @Benchmark
+    public byte[] encryptChunked() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(plainText.length + 1024);
+
+        try (OutputStream encrypt = ChunkedEncryptionHelper.encrypt(key, out)) {
+            encrypt.write(plainText);
+        }
+
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public int decryptChunked() throws Exception {
+        int total = 0;
+
+        try (InputStream decrypt = ChunkedEncryptionHelper.decrypt(key, new ByteArrayInputStream(chunkedCipherText))) {
+            int count;
+            while ((count = decrypt.read(buffer)) != -1)
+                total += count;
+        }
+
+        return total;
+    }
+}
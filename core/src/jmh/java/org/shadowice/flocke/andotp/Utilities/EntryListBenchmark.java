@@ -0,0 +1,75 @@
+package org.shadowice.flocke.andotp.Utilities;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.shadowice.flocke.andotp.Database.Entry;
+import org.shadowice.flocke.andotp.Database.EntryList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EntryListBenchmark {
+    private static final String TYPED_QUERY = "user12@exa";
+    private static final List<String> FILTER_TAGS = Arrays.asList("work", "dev");
+    private static final List<Constants.SearchIncludes> SEARCH_ALL = Arrays.asList(Constants.SearchIncludes.values());
+
+    @Param({"10", "100", "1000", "10000"})
+    public int entryCount;
+
+    private EntryList entries;
+
+    @Setup
+    public void setup() {
+        entries = new EntryList();
+        entries.updateEntries(BenchmarkData.createEntries(entryCount), false);
+    }
+
+    @Benchmark
+    public ArrayList<Entry> searchShort() {
+        return entries.getFilteredEntries("git", SEARCH_ALL, Constants.SortMode.UNSORTED);
+    }
+
+    @Benchmark
+    public ArrayList<Entry> searchLong() {
+        return entries.getFilteredEntries("user12@exa", SEARCH_ALL, Constants.SortMode.UNSORTED);
+    }
+
+    @Benchmark
+    public ArrayList<Entry> filterByTags() {
+        return entries.getEntriesFilteredByTags(FILTER_TAGS, true, Constants.TagFunctionality.OR, Constants.SortMode.UNSORTED);
+    }
+
+    @Benchmark
+    public ArrayList<Entry> sortByIssuer() {
+        return entries.getEntriesSorted(Constants.SortMode.ISSUER);
+    }
+
+    // Typing a query character by character
+    @Benchmark
+    public ArrayList<Entry> searchTyping() {
+        EntryList.SearchSession session = entries.newSearchSession();
+        ArrayList<Entry> matches = null;
+
+        for (int i = 1; i <= TYPED_QUERY.length(); i++)
+            matches = session.getFilteredEntries(TYPED_QUERY.substring(0, i), SEARCH_ALL, Constants.SortMode.UNSORTED);
+
+        return matches;
+    }
+}
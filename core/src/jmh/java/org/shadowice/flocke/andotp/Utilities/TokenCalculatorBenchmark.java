@@ -0,0 +1,97 @@
+package org.shadowice.flocke.andotp.Utilities;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Mac;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenCalculatorBenchmark {
+    private static final long TIME = 1111111109L;
+    private static final long COUNTER = 1234L;
+
+    @State(Scope.Thread)
+    public static class HmacState {
+        @Param({"SHA1", "SHA256", "SHA512"})
+        public TokenCalculator.HashAlgorithm algorithm;
+
+        byte[] secret;
+        Mac mac;
+        TokenCalculator.TokenBuffer buffer;
+
+        @Setup
+        public void setup() throws Exception {
+            // Key lengths from the RFC 6238 test vectors
+            int keyLength = algorithm == TokenCalculator.HashAlgorithm.SHA512 ? 64 : algorithm == TokenCalculator.HashAlgorithm.SHA256 ? 32 : 20;
+
+            secret = new byte[keyLength];
+            for (int i = 0; i < keyLength; i++)
+                secret[i] = (byte) ('0' + (i + 1) % 10);
+
+            mac = TokenCalculator.getMac(algorithm, secret);
+            buffer = new TokenCalculator.TokenBuffer();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class MOTPState {
+        String secret = "e3152afee62599c8";
+        String pin = "1234";
+    }
+
+    @Benchmark
+    public int totpRFC6238(HmacState state) {
+        return TokenCalculator.TOTP_RFC6238(state.secret, TokenCalculator.TOTP_DEFAULT_PERIOD, TIME, TokenCalculator.TOTP_DEFAULT_DIGITS, state.algorithm, 0);
+    }
+
+    @Benchmark
+    public String totpRFC6238Formatted(HmacState state) {
+        int token = TokenCalculator.TOTP_RFC6238(state.mac, TokenCalculator.TOTP_DEFAULT_PERIOD, TIME, TokenCalculator.TOTP_DEFAULT_DIGITS, 0, state.buffer);
+        return TokenCalculator.formatToken(token, TokenCalculator.TOTP_DEFAULT_DIGITS, state.buffer);
+    }
+
+    @Benchmark
+    public int totpRFC6238ReusedMac(HmacState state) {
+        return TokenCalculator.TOTP_RFC6238(state.mac, TokenCalculator.TOTP_DEFAULT_PERIOD, TIME, TokenCalculator.TOTP_DEFAULT_DIGITS, 0, state.buffer);
+    }
+
+    @Benchmark
+    public String totpSteam(HmacState state) {
+        return TokenCalculator.TOTP_Steam(state.secret, TokenCalculator.TOTP_DEFAULT_PERIOD, TokenCalculator.STEAM_DEFAULT_DIGITS, state.algorithm, 0);
+    }
+
+    @Benchmark
+    public String totpSteamReusedMac(HmacState state) {
+        return TokenCalculator.TOTP_Steam(state.mac, TokenCalculator.TOTP_DEFAULT_PERIOD, TIME, TokenCalculator.STEAM_DEFAULT_DIGITS, 0, state.buffer);
+    }
+
+    @Benchmark
+    public String hotp(HmacState state) {
+        return TokenCalculator.HOTP(state.secret, COUNTER, TokenCalculator.TOTP_DEFAULT_DIGITS, state.algorithm);
+    }
+
+    @Benchmark
+    public int hotpReusedMac(HmacState state) {
+        return TokenCalculator.HOTP(state.mac, COUNTER, TokenCalculator.TOTP_DEFAULT_DIGITS, state.buffer);
+    }
+
+    @Benchmark
+    public String motp(MOTPState state) {
+        return TokenCalculator.MOTP(state.pin, state.secret, TIME, 0);
+    }
+}
@@ -23,27 +23,52 @@
 
 package org.shadowice.flocke.andotp.Database;
 
-import android.net.Uri;
-
 import org.apache.commons.codec.binary.Base32;
 import org.apache.commons.codec.binary.Hex;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
-import org.shadowice.flocke.andotp.Utilities.EntryThumbnail;
+import org.shadowice.flocke.andotp.Utilities.BinaryHelper;
 import org.shadowice.flocke.andotp.Utilities.TokenCalculator;
+import org.shadowice.flocke.andotp.Utilities.TokenLookahead;
+import org.shadowice.flocke.andotp.Utilities.UriHelper;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.CollationKey;
+import java.text.Collator;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
+import javax.crypto.Mac;
+
 public class Entry {
     public enum OTPType {
         TOTP, HOTP, MOTP, STEAM
     }
 
+    /**
+     * Maps an issuer to the name of a matching thumbnail, the thumbnails themselves are provided
+     * by the platform (e.g. as Android resources) so the lookup has to be supplied from there.
+     */
+    public interface ThumbnailResolver {
+        String thumbnailForIssuer(String issuer);
+        String normalizeThumbnail(String name);
+    }
+
+    public static final String THUMBNAIL_DEFAULT = "Default";
+
+    private static ThumbnailResolver thumbnailResolver = null;
+
     private static final OTPType DEFAULT_TYPE = OTPType.TOTP;
     private static final int DEFAULT_PERIOD = 30;
     private static final String MOTP_NO_PIN_CODE = "PINREQ";
@@ -77,13 +102,42 @@ public class Entry {
     private long last_used = 0;
     private long used_frequency = 0;
     public List<String> tags = new ArrayList<>();
-    private EntryThumbnail.EntryThumbnails thumbnail = EntryThumbnail.EntryThumbnails.Default;
+    private String thumbnail = THUMBNAIL_DEFAULT;
     private static final int COLOR_DEFAULT = 0;
     public static final int COLOR_RED = 1;
     private static final int EXPIRY_TIME = 8;
     private int color = COLOR_DEFAULT;
     private String pin = "";
     private long listId = 0;
+    private EntryList list = null;
+    private String fingerprint = null;
+    private Collator collator = null;
+    private CollationKey issuerCollationKey = null;
+    private CollationKey labelCollationKey = null;
+    private Mac mac = null;
+    private TokenCalculator.TokenBuffer tokenBuffer = null;
+    private volatile LookaheadToken lookaheadToken = null;
+    private Mac lookaheadMac = null;
+    private byte[] lookaheadSecret = null;
+    private TokenCalculator.TokenBuffer lookaheadBuffer = null;
+
+    private static class LookaheadToken {
+        final long window;
+        final OTPType type;
+        final int period;
+        final int digits;
+        final byte[] secret;
+        final String token;
+
+        LookaheadToken(long window, OTPType type, int period, int digits, byte[] secret, String token) {
+            this.window = window;
+            this.type = type;
+            this.period = period;
+            this.digits = digits;
+            this.secret = secret;
+            this.token = token;
+        }
+    }
 
     public Entry(){}
 
@@ -123,8 +177,8 @@ public class Entry {
 
     public Entry(String contents) throws Exception {
         contents = contents.replaceFirst("otpauth", "http");
-        Uri uri = Uri.parse(contents);
         URL url = new URL(contents);
+        Map<String, List<String>> query = UriHelper.parseQuery(url.getQuery());
 
         if(!url.getProtocol().equals("http")){
             throw new Exception("Invalid Protocol");
@@ -147,20 +201,20 @@ public class Entry {
                 throw new Exception("unknown otp type");
         }
 
-        String secret = uri.getQueryParameter("secret");
+        String secret = UriHelper.getQueryParameter(query, "secret");
 
-        String counter = uri.getQueryParameter("counter");
-        String issuer = uri.getQueryParameter("issuer");
+        String counter = UriHelper.getQueryParameter(query, "counter");
+        String issuer = UriHelper.getQueryParameter(query, "issuer");
 
         String label = "";
 
-        if (uri.getPath() != null)
-            label = getStrippedLabel(issuer, uri.getPath().substring(1));
+        if (!url.getPath().isEmpty())
+            label = getStrippedLabel(issuer, UriHelper.decode(url.getPath().substring(1), false));
 
-        String period = uri.getQueryParameter("period");
-        String digits = uri.getQueryParameter("digits");
-        String algorithm = uri.getQueryParameter("algorithm");
-        List<String> tags = uri.getQueryParameters("tags");
+        String period = UriHelper.getQueryParameter(query, "period");
+        String digits = UriHelper.getQueryParameter(query, "digits");
+        String algorithm = UriHelper.getQueryParameter(query, "algorithm");
+        List<String> tags = query.get("tags");
 
         if (type == OTPType.HOTP) {
             if (counter != null) {
@@ -201,7 +255,7 @@ public class Entry {
         }
 
         if (tags != null) {
-            this.tags = tags;
+            this.tags = new ArrayList<>(tags);
         } else {
             this.tags = new ArrayList<>();
         }
@@ -266,9 +320,9 @@ public class Entry {
         }
 
         try {
-            this.thumbnail = EntryThumbnail.EntryThumbnails.valueOfIgnoreCase(jsonObj.getString(JSON_THUMBNAIL));
+            this.thumbnail = normalizeThumbnail(jsonObj.getString(JSON_THUMBNAIL));
         } catch(Exception e) {
-            this.thumbnail = EntryThumbnail.EntryThumbnails.Default;
+            this.thumbnail = THUMBNAIL_DEFAULT;
         }
 
         try {
@@ -292,7 +346,7 @@ public class Entry {
         jsonObj.put(JSON_DIGITS, getDigits());
         jsonObj.put(JSON_TYPE, getType().toString());
         jsonObj.put(JSON_ALGORITHM, algorithm.toString());
-        jsonObj.put(JSON_THUMBNAIL, getThumbnail().name());
+        jsonObj.put(JSON_THUMBNAIL, getThumbnail());
         jsonObj.put(JSON_LAST_USED, getLastUsed());
         jsonObj.put(JSON_USED_FREQUENCY, getUsedFrequency() );
 
@@ -310,7 +364,69 @@ public class Entry {
         return jsonObj;
     }
 
-    public Uri toUri() {
+    /**
+     * Reads an entry written by {@link #writeBinary(DataOutput, Map)}.
+     *
+     * @param in Input limited to the record of this entry
+     * @param size Size of the record, used to validate the lengths inside it
+     * @param tagTable Tags of the database, referenced by their index
+     */
+    public Entry(DataInput in, int size, List<String> tagTable)
+            throws IOException {
+        OTPType[] types = OTPType.values();
+        TokenCalculator.HashAlgorithm[] algorithms = TokenCalculator.HashAlgorithm.values();
+
+        int typeIndex = BinaryHelper.readLength(in, types.length);
+        int algorithmIndex = BinaryHelper.readLength(in, algorithms.length);
+
+        this.type = types[typeIndex];
+        this.algorithm = algorithms[algorithmIndex];
+        this.digits = BinaryHelper.readVarInt(in);
+        this.period = BinaryHelper.readVarInt(in);
+        this.counter = BinaryHelper.readVarLong(in);
+        this.secret = BinaryHelper.readBytes(in, size);
+        this.issuer = BinaryHelper.readString(in, size);
+        this.label = BinaryHelper.readString(in, size);
+
+        String thumbnail = BinaryHelper.readString(in, size);
+        this.thumbnail = thumbnail != null ? normalizeThumbnail(thumbnail) : THUMBNAIL_DEFAULT;
+
+        this.last_used = BinaryHelper.readVarLong(in);
+        this.used_frequency = BinaryHelper.readVarLong(in);
+
+        int tagCount = BinaryHelper.readLength(in, size);
+        this.tags = new ArrayList<>(tagCount);
+        for (int i = 0; i < tagCount; i++)
+            this.tags.add(tagTable.get(BinaryHelper.readLength(in, tagTable.size())));
+    }
+
+    /**
+     * Writes the entry in the binary database format. Enums are stored by their ordinal, so new
+     * values may only be appended to {@link OTPType} and {@link TokenCalculator.HashAlgorithm}.
+     *
+     * @param out Output for the record of this entry
+     * @param tagIndices Index of every tag in the tag table of the database
+     */
+    public void writeBinary(DataOutput out, Map<String, Integer> tagIndices)
+            throws IOException {
+        BinaryHelper.writeVarInt(out, type.ordinal());
+        BinaryHelper.writeVarInt(out, algorithm.ordinal());
+        BinaryHelper.writeVarInt(out, digits);
+        BinaryHelper.writeVarInt(out, period);
+        BinaryHelper.writeVarLong(out, counter);
+        BinaryHelper.writeBytes(out, secret);
+        BinaryHelper.writeString(out, issuer);
+        BinaryHelper.writeString(out, label);
+        BinaryHelper.writeString(out, thumbnail);
+        BinaryHelper.writeVarLong(out, last_used);
+        BinaryHelper.writeVarLong(out, used_frequency);
+
+        BinaryHelper.writeVarInt(out, tags.size());
+        for (String tag : tags)
+            BinaryHelper.writeVarInt(out, tagIndices.get(tag));
+    }
+
+    public String toUri() {
         String type;
         switch (this.type) {
             case TOTP:
@@ -328,37 +444,37 @@ public class Entry {
             default:
                 return null;
         }
-        Uri.Builder builder = new Uri.Builder()
-                .scheme("otpauth")
-                .authority(type)
-                .appendPath(this.label);
+        StringBuilder builder = new StringBuilder("otpauth://")
+                .append(type)
+                .append('/')
+                .append(UriHelper.encode(this.label));
 
         if (this.type == OTPType.MOTP)
-            builder.appendQueryParameter("secret", new String(this.secret));
+            UriHelper.appendQueryParameter(builder, "secret", new String(this.secret));
         else
-             builder.appendQueryParameter("secret", new Base32().encodeAsString(this.secret));
+            UriHelper.appendQueryParameter(builder, "secret", new Base32().encodeAsString(this.secret));
 
         if (this.issuer != null) {
-            builder.appendQueryParameter("issuer", this.issuer);
+            UriHelper.appendQueryParameter(builder, "issuer", this.issuer);
         }
         switch (this.type) {
             case HOTP:
-                builder.appendQueryParameter("counter", Long.toString(this.counter));
+                UriHelper.appendQueryParameter(builder, "counter", Long.toString(this.counter));
             case TOTP:
                 if (this.period != TokenCalculator.TOTP_DEFAULT_PERIOD)
-                    builder.appendQueryParameter("period", Integer.toString(this.period));
+                    UriHelper.appendQueryParameter(builder, "period", Integer.toString(this.period));
                 break;
         }
         if (this.digits != TokenCalculator.TOTP_DEFAULT_DIGITS) {
-            builder.appendQueryParameter("digits", Integer.toString(this.digits));
+            UriHelper.appendQueryParameter(builder, "digits", Integer.toString(this.digits));
         }
         if (this.algorithm != TokenCalculator.DEFAULT_ALGORITHM) {
-            builder.appendQueryParameter("algorithm", this.algorithm.name());
+            UriHelper.appendQueryParameter(builder, "algorithm", this.algorithm.name());
         }
         for (String tag : this.tags) {
-            builder.appendQueryParameter("tags", tag);
+            UriHelper.appendQueryParameter(builder, "tags", tag);
         }
-        return builder.build();
+        return builder.toString();
     }
 
     public boolean isTimeBased() {
@@ -373,6 +489,7 @@ public class Entry {
 
     public void setType(OTPType type) {
         this.type = type;
+        identityChanged();
     }
 
     public byte[] getSecret() {
@@ -388,6 +505,8 @@ public class Entry {
 
     public void setSecret(byte[] secret) {
         this.secret = secret;
+        this.mac = null;
+        identityChanged();
     }
 
     public String getIssuer() {
@@ -396,6 +515,8 @@ public class Entry {
 
     public void setIssuer(String issuer, boolean updateThumbnail) {
         this.issuer = issuer;
+        this.issuerCollationKey = null;
+        identityChanged();
 
         if (updateThumbnail && issuer != null)
             setThumbnailFromIssuer(issuer);
@@ -407,6 +528,8 @@ public class Entry {
 
     public void setLabel(String label) {
         this.label = label;
+        this.labelCollationKey = null;
+        identityChanged();
     }
 
     public int getPeriod() {
@@ -415,6 +538,7 @@ public class Entry {
 
     public void setPeriod(int period) {
         this.period = period;
+        identityChanged();
     }
 
     public long getCounter() {
@@ -423,6 +547,7 @@ public class Entry {
 
     public void setCounter(long counter) {
         this.counter = counter;
+        identityChanged();
     }
 
     public int getDigits() {
@@ -431,15 +556,19 @@ public class Entry {
 
     public void setDigits(int digits) {
         this.digits = digits;
+        identityChanged();
     }
 
     public List<String> getTags() { return tags; }
 
-    public void setTags(List<String> tags) { this.tags = tags; }
+    public void setTags(List<String> tags) {
+        this.tags = tags;
+        contentChanged();
+    }
 
-    public EntryThumbnail.EntryThumbnails getThumbnail() { return thumbnail; }
+    public String getThumbnail() { return thumbnail; }
 
-    public void setThumbnail( EntryThumbnail.EntryThumbnails value) { thumbnail = value; }
+    public void setThumbnail(String value) { thumbnail = value; }
 
     public TokenCalculator.HashAlgorithm getAlgorithm() {
         return this.algorithm;
@@ -497,6 +626,10 @@ public class Entry {
         this.pin = pin;
     }
 
+    public long getLastUpdate() {
+        return last_update;
+    }
+
     public long getListId() {
         return listId;
     }
@@ -505,12 +638,122 @@ public class Entry {
         listId = newId;
     }
 
+    void setList(EntryList list) {
+        this.list = list;
+    }
+
+    // Keeps the fingerprint and the index of the list this entry belongs to up to date with the fields used in equals()
+    private void identityChanged() {
+        fingerprint = null;
+        contentChanged();
+    }
+
+    // Keeps the indexes of the list this entry belongs to up to date with the searchable fields
+    private void contentChanged() {
+        if (list != null)
+            list.entryChanged(this);
+    }
+
+    /**
+     * Content fingerprint of the entry: a SHA-256 hash (hex encoded) over all fields that are
+     * compared in {@link #equals(Object)}. It is calculated once and cached until one of these
+     * fields changes, so it can be used to find duplicates in large lists of entries.
+     */
+    public String getFingerprint() {
+        String result = fingerprint;
+
+        if (result == null) {
+            try {
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+
+                updateDigest(digest, type.name());
+                digest.update(ByteBuffer.allocate(16).putInt(period).putLong(counter).putInt(digits).array());
+                updateDigest(digest, algorithm.name());
+                updateDigest(digest, secret);
+                updateDigest(digest, label);
+                updateDigest(digest, issuer);
+
+                result = new String(Hex.encodeHex(digest.digest()));
+            } catch (NoSuchAlgorithmException e) {
+                e.printStackTrace();
+                result = "";
+            }
+
+            fingerprint = result;
+        }
+
+        return result;
+    }
+
+    // Collation keys are cached until the text changes or a different collator is used
+    CollationKey getIssuerCollationKey(Collator collator) {
+        CollationKey key = issuerCollationKey;
+
+        if (key == null || this.collator != collator) {
+            key = getCollationKey(collator, issuer);
+            setCollator(collator);
+            issuerCollationKey = key;
+        }
+
+        return key;
+    }
+
+    CollationKey getLabelCollationKey(Collator collator) {
+        CollationKey key = labelCollationKey;
+
+        if (key == null || this.collator != collator) {
+            key = getCollationKey(collator, label);
+            setCollator(collator);
+            labelCollationKey = key;
+        }
+
+        return key;
+    }
+
+    private void setCollator(Collator collator) {
+        if (this.collator != collator) {
+            this.collator = collator;
+            this.issuerCollationKey = null;
+            this.labelCollationKey = null;
+        }
+    }
+
+    private static CollationKey getCollationKey(Collator collator, String value) {
+        // Collators are not thread-safe
+        synchronized (collator) {
+            return collator.getCollationKey(value != null ? value : "");
+        }
+    }
+
+    private static void updateDigest(MessageDigest digest, String value) {
+        updateDigest(digest, value != null ? value.getBytes(StandardCharsets.UTF_8) : null);
+    }
+
+    // Values are prefixed with their length so different field contents can't produce the same input
+    private static void updateDigest(MessageDigest digest, byte[] value) {
+        digest.update(ByteBuffer.allocate(4).putInt(value != null ? value.length : -1).array());
+
+        if (value != null)
+            digest.update(value);
+    }
+
     public boolean updateOTP(boolean updateNow) {
+        return updateOTP(updateNow, System.currentTimeMillis() / 1000);
+    }
+
+    /**
+     * Updates the token for the given time (in seconds since the epoch), this allows updating a
+     * number of entries for one consistent point in time (see {@link TokenCalculator#computeAll}).
+     *
+     * @return Return true if the token was recalculated
+     */
+    public boolean updateOTP(boolean updateNow, long time) {
         if (type == OTPType.TOTP || type == OTPType.STEAM || type == OTPType.MOTP) {
-            long time = System.currentTimeMillis() / 1000;
             long counter = time / this.getPeriod();
 
             if (updateNow || counter > last_update) {
+                TokenCalculator.TokenBuffer buffer = getTokenBuffer();
+
                 // Store the previous token so we don't have to recalculate it every time
                 if (currentOTP != null && !currentOTP.isEmpty())
                     prevOTP = currentOTP;
@@ -519,17 +762,23 @@ public class Entry {
 
                 switch (type) {
                     case TOTP:
-                        currentOTP = TokenCalculator.TOTP_RFC6238(secret, period, digits, algorithm, 0);
+                        currentOTP = takeLookaheadOTP(counter);
+
+                        if (currentOTP == null)
+                            currentOTP = TokenCalculator.formatToken(TokenCalculator.TOTP_RFC6238(getMac(), period, time, digits, 0, buffer), digits, buffer);
 
                         if (prevOTP == null || prevOTP.isEmpty())
-                            prevOTP = TokenCalculator.TOTP_RFC6238(secret, period, digits, algorithm, -1);
+                            prevOTP = TokenCalculator.formatToken(TokenCalculator.TOTP_RFC6238(getMac(), period, time, digits, -1, buffer), digits, buffer);
 
                         break;
                     case STEAM:
-                        currentOTP = TokenCalculator.TOTP_Steam(secret, period, digits, algorithm, 0);
+                        currentOTP = takeLookaheadOTP(counter);
+
+                        if (currentOTP == null)
+                            currentOTP = TokenCalculator.TOTP_Steam(getMac(), period, time, digits, 0, buffer);
 
                         if (prevOTP == null || prevOTP.isEmpty())
-                            prevOTP = TokenCalculator.TOTP_Steam(secret, period, digits, algorithm, -1);
+                            prevOTP = TokenCalculator.TOTP_Steam(getMac(), period, time, digits, -1, buffer);
 
                         break;
                     case MOTP:
@@ -554,13 +803,97 @@ public class Entry {
                 return false;
             }
         } else if (type == OTPType.HOTP) {
-            currentOTP = TokenCalculator.HOTP(secret, counter, digits, algorithm);
+            TokenCalculator.TokenBuffer buffer = getTokenBuffer();
+            currentOTP = TokenCalculator.formatToken(TokenCalculator.HOTP(getMac(), counter, digits, buffer), digits, buffer);
             return true;
         } else {
             return false;
         }
     }
 
+    /**
+     * Returns the keyed HMAC instance for this entry, it is created on first use and reused for all
+     * following token calculations until the secret changes.
+     */
+    private Mac getMac() {
+        if (mac == null) {
+            try {
+                mac = TokenCalculator.getMac(algorithm, secret);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+
+        return mac;
+    }
+
+    private TokenCalculator.TokenBuffer getTokenBuffer() {
+        if (tokenBuffer == null)
+            tokenBuffer = new TokenCalculator.TokenBuffer();
+
+        return tokenBuffer;
+    }
+
+    public boolean supportsLookahead() {
+        return type == OTPType.TOTP || type == OTPType.STEAM;
+    }
+
+    /**
+     * Calculates the token of an upcoming window ahead of time, {@link #updateOTP(boolean, long)}
+     * swaps it in once that window starts instead of calculating it itself. This uses its own Mac
+     * and buffer, so it can run on a (single) background thread next to the regular updates.
+     *
+     * @param window Window (time / period) to calculate the token for
+     */
+    public void precomputeOTP(long window) {
+        OTPType type = this.type;
+        int period = this.period;
+        int digits = this.digits;
+        byte[] secret = this.secret;
+
+        if ((type != OTPType.TOTP && type != OTPType.STEAM) || secret == null)
+            return;
+
+        if (lookaheadMac == null || lookaheadSecret != secret) {
+            try {
+                lookaheadMac = TokenCalculator.getMac(algorithm, secret);
+                lookaheadSecret = secret;
+            } catch (Exception e) {
+                e.printStackTrace();
+                return;
+            }
+        }
+
+        if (lookaheadBuffer == null)
+            lookaheadBuffer = new TokenCalculator.TokenBuffer();
+
+        long time = window * period;
+        String token;
+
+        if (type == OTPType.TOTP)
+            token = TokenCalculator.formatToken(TokenCalculator.TOTP_RFC6238(lookaheadMac, period, time, digits, 0, lookaheadBuffer), digits, lookaheadBuffer);
+        else
+            token = TokenCalculator.TOTP_Steam(lookaheadMac, period, time, digits, 0, lookaheadBuffer);
+
+        lookaheadToken = new LookaheadToken(window, type, period, digits, secret, token);
+    }
+
+    /**
+     * Returns the precomputed token if it is still valid for the given window and the current
+     * settings of the entry (they might have been changed since it was calculated).
+     */
+    private String takeLookaheadOTP(long window) {
+        LookaheadToken lookahead = lookaheadToken;
+
+        if (lookahead != null && lookahead.window == window && lookahead.type == type &&
+                lookahead.period == period && lookahead.digits == digits && lookahead.secret == secret) {
+            lookaheadToken = null;
+            return lookahead.token;
+        }
+
+        return null;
+    }
+
     /**
      * Checks if the OTP is expiring. The color for the entry will be changed to red if the expiry time is less than or equal to 8 seconds
      * COLOR_DEFAULT indicates that the OTP has not expired. In this case check if the OTP is about to expire. Update color to COLOR_RED if it's about to expire
@@ -570,8 +903,11 @@ public class Entry {
      * @return Return true only if the color has changed to red to save from unnecessary notifying dataset
      * */
     public boolean hasColorChanged() {
+        return hasColorChanged(System.currentTimeMillis() / 1000);
+    }
+
+    public boolean hasColorChanged(long time) {
         if(color == COLOR_DEFAULT){
-            long time = System.currentTimeMillis() / 1000;
             if ((time % getPeriod()) > (getPeriod() - EXPIRY_TIME)) {
                 setColor(COLOR_RED);
                 return true;
@@ -580,16 +916,50 @@ public class Entry {
         return false;
     }
 
+    /**
+     * Returns the next point in time at which the displayed state of this entry changes: the start
+     * of the next window, the start of the token lookahead or the start of the expiry highlighting.
+     *
+     * @param time Current time (in seconds since the epoch)
+     * @param highlightExpiry Include the start of the expiry highlighting
+     * @return Time of the next change (in seconds since the epoch) or Long.MAX_VALUE if the entry is not time based
+     */
+    public long getNextUpdate(long time, boolean highlightExpiry) {
+        if (!isTimeBased() || period <= 0)
+            return Long.MAX_VALUE;
+
+        long windowEnd = (time / period + 1) * period;
+        long next = windowEnd;
+
+        if (supportsLookahead())
+            next = earliestAfter(time, windowEnd - TokenLookahead.LOOKAHEAD_SECONDS, next);
+
+        if (highlightExpiry)
+            next = earliestAfter(time, windowEnd - EXPIRY_TIME + 1, next);
+
+        return next;
+    }
+
+    private static long earliestAfter(long time, long candidate, long current) {
+        return (candidate > time && candidate < current) ? candidate : current;
+    }
+
+    public static void setThumbnailResolver(ThumbnailResolver resolver) {
+        thumbnailResolver = resolver;
+    }
+
+    private static String normalizeThumbnail(String name) {
+        if (thumbnailResolver != null)
+            return thumbnailResolver.normalizeThumbnail(name);
+        else
+            return name;
+    }
+
     private void setThumbnailFromIssuer(String issuer) {
-        try {
-            this.thumbnail = EntryThumbnail.EntryThumbnails.valueOfIgnoreCase(issuer);
-        } catch(Exception e) {
-            try {
-                this.thumbnail = EntryThumbnail.EntryThumbnails.valueOfFuzzy(issuer);
-            } catch(Exception e2) {
-                this.thumbnail = EntryThumbnail.EntryThumbnails.Default;
-            }
-        }
+        if (thumbnailResolver != null)
+            this.thumbnail = thumbnailResolver.thumbnailForIssuer(issuer);
+        else
+            this.thumbnail = THUMBNAIL_DEFAULT;
     }
 
     @Override
@@ -602,6 +972,10 @@ public class Entry {
 
         Entry entry = (Entry) o;
 
+        // Cached fingerprints can only differ if the fields differ
+        if (fingerprint != null && entry.fingerprint != null && !fingerprint.equals(entry.fingerprint))
+            return false;
+
         return type == entry.type &&
                 period == entry.period &&
                 counter == entry.counter &&
@@ -612,9 +986,11 @@ public class Entry {
                 Objects.equals(issuer, entry.issuer);
     }
 
+    // Only fields that aren't changed by regular use (e.g. the counter of HOTP entries or the
+    // label), the fingerprint is too expensive here
     @Override
     public int hashCode() {
-        return Objects.hash(type, period, counter, digits, algorithm, secret, label, issuer);
+        return 31 * Objects.hash(type, algorithm) + Arrays.hashCode(secret);
     }
 
     public void setColor(int color) {
@@ -0,0 +1,431 @@
+package org.shadowice.flocke.andotp.Database;
+
+import org.shadowice.flocke.andotp.Utilities.Constants;
+
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * List of all entries, indexed by their list ID and by their fingerprint (see
+ * {@link Entry#getFingerprint()}), so adding, merging and looking up entries doesn't require a scan
+ * over the whole list. Entries notify the list they belong to when their identity changes.
+ *
+ * All state is guarded by the list itself, so searches can run on the worker thread of a filter
+ * while the list is changed on the main thread.
+ */
+public class EntryList {
+    private final ArrayList<Entry> entries;
+    private final AtomicLong currentId = new AtomicLong();
+
+    private final HashMap<Long, Integer> positions = new HashMap<>();
+    private final HashMap<Long, String> keys = new HashMap<>();
+    private final HashMap<String, Long> ids = new HashMap<>();
+    private final EntrySearchIndex searchIndex = new EntrySearchIndex();
+    private final EntryTagIndex tagIndex = new EntryTagIndex();
+    private final EntrySortIndex sortIndex = new EntrySortIndex();
+
+    private static Collator collator = null;
+    private static Locale collatorLocale = null;
+
+    // Incremented on every change of the list or its entries
+    private int modCount = 0;
+
+    public EntryList() {
+        entries = new ArrayList<>();
+    }
+
+    public synchronized boolean addEntry(Entry newEntry) {
+        return addEntry(newEntry, false);
+    }
+
+    public synchronized boolean addEntry(Entry newEntry, boolean update) {
+        String key = newEntry.getFingerprint();
+        Long oldId = ids.get(key);
+
+        modCount++;
+
+        if (oldId == null) {
+            long newId = currentId.incrementAndGet();
+            newEntry.setListId(newId);
+
+            entries.add(newEntry);
+            index(newEntry, key, entries.size() - 1);
+            sortIndex.add(newEntry);
+
+            return true;
+        } else {
+            if (update) {
+                int oldIdx = positions.get(oldId);
+                Entry oldEntry = entries.get(oldIdx);
+
+                oldEntry.setList(null);
+                searchIndex.remove(oldEntry);
+                tagIndex.clear(oldIdx);
+
+                newEntry.setListId(oldId);
+                entries.set(oldIdx, newEntry);
+                index(newEntry, key, oldIdx);
+                sortIndex.replace(oldEntry, newEntry);
+            }
+        }
+
+        return false;
+    }
+
+    public synchronized void updateEntries(ArrayList<Entry> newEntries, boolean update) {
+        HashSet<String> newKeys = new HashSet<>();
+        for (Entry e : newEntries)
+            newKeys.add(e.getFingerprint());
+
+        // Remove all items not in the new list
+        ArrayList<Entry> retained = new ArrayList<>(entries.size());
+        for (Entry e : entries) {
+            if (newKeys.contains(keys.get(e.getListId()))) {
+                retained.add(e);
+            } else {
+                e.setList(null);
+                searchIndex.remove(e);
+            }
+        }
+
+        entries.clear();
+        entries.addAll(retained);
+        reindex();
+
+        modCount++;
+
+        // Add new and update existing entries
+        for (Entry e : newEntries) {
+            addEntry(e, update);
+        }
+
+        // Retained entries are still at their old position, take over the order of the new list
+        if (update) {
+            ArrayList<Entry> ordered = new ArrayList<>(entries.size());
+            HashSet<Long> added = new HashSet<>();
+
+            for (Entry e : newEntries) {
+                long listId = ids.get(e.getFingerprint());
+
+                if (added.add(listId))
+                    ordered.add(entries.get(positions.get(listId)));
+            }
+
+            if (!ordered.equals(entries)) {
+                entries.clear();
+                entries.addAll(ordered);
+                reindex();
+            }
+        }
+    }
+
+    public synchronized Entry getEntry(int pos) {
+        return entries.get(pos);
+    }
+
+    public synchronized Entry getEntryById(long listId) {
+        Integer pos = positions.get(listId);
+        return pos != null ? entries.get(pos) : null;
+    }
+
+    public synchronized void swapEntries(int fromPosition, int toPosition) {
+        Collections.swap(entries, fromPosition, toPosition);
+        modCount++;
+
+        positions.put(entries.get(fromPosition).getListId(), fromPosition);
+        positions.put(entries.get(toPosition).getListId(), toPosition);
+
+        tagIndex.clear(fromPosition);
+        tagIndex.clear(toPosition);
+        tagIndex.set(fromPosition, entries.get(fromPosition));
+        tagIndex.set(toPosition, entries.get(toPosition));
+
+        // Only the order of entries that compare equal depends on their position
+        sortIndex.swap(entries.get(fromPosition), entries.get(toPosition));
+    }
+
+    public synchronized void removeEntry(int pos) {
+        Entry removed = entries.remove(pos);
+        modCount++;
+
+        removed.setList(null);
+        searchIndex.remove(removed);
+        sortIndex.remove(removed);
+        long listId = removed.getListId();
+        positions.remove(listId);
+        removeKey(listId);
+
+        for (int i = pos; i < entries.size(); i++)
+            positions.put(entries.get(i).getListId(), i);
+
+        tagIndex.remove(pos);
+    }
+
+    public synchronized int indexOf(Entry e) {
+        // Entries taken from this list are found by their ID, everything else by its identity
+        Integer pos = positions.get(e.getListId());
+        if (pos != null && entries.get(pos) == e)
+            return pos;
+
+        Long listId = ids.get(e.getFingerprint());
+        if (listId == null)
+            return -1;
+
+        return positions.get(listId);
+    }
+
+    public synchronized int indexOf(long listId) {
+        Integer pos = positions.get(listId);
+        return pos != null ? pos : -1;
+    }
+
+    public synchronized boolean contains(Entry e) {
+        return indexOf(e) >= 0;
+    }
+
+    public synchronized boolean isEqual(ArrayList<Entry> otherEntries) {
+        return entries.equals(otherEntries);
+    }
+
+    public synchronized ArrayList<Entry> getEntries() {
+        return new ArrayList<>(entries);
+    }
+
+    synchronized void entryChanged(Entry e) {
+        long listId = e.getListId();
+
+        Integer pos = positions.get(listId);
+
+        if (pos != null) {
+            modCount++;
+            removeKey(listId);
+
+            String key = e.getFingerprint();
+            keys.put(listId, key);
+            ids.put(key, listId);
+
+            searchIndex.put(e);
+
+            tagIndex.clear(pos);
+            tagIndex.set(pos, e);
+
+            sortIndex.update(e);
+        }
+    }
+
+    private void index(Entry e, String key, int pos) {
+        long listId = e.getListId();
+
+        e.setList(this);
+        positions.put(listId, pos);
+        keys.put(listId, key);
+        ids.put(key, listId);
+        searchIndex.put(e);
+        tagIndex.set(pos, e);
+    }
+
+    private void reindex() {
+        positions.clear();
+        keys.clear();
+        ids.clear();
+        searchIndex.clear();
+        tagIndex.clear();
+
+        for (int i = 0; i < entries.size(); i++)
+            index(entries.get(i), entries.get(i).getFingerprint(), i);
+
+        sortIndex.rebuild(entries);
+    }
+
+    private void removeKey(long listId) {
+        String oldKey = keys.remove(listId);
+
+        // Another entry with the same identity might have taken over the key in the meantime
+        if (oldKey != null && Long.valueOf(listId).equals(ids.get(oldKey)))
+            ids.remove(oldKey);
+    }
+
+    public synchronized ArrayList<Entry> getEntriesSorted(Constants.SortMode sortMode) {
+        return sortSubset(entries, sortMode);
+    }
+
+    // Entries of this list can be taken from the presorted orders instead of sorting them again
+    private ArrayList<Entry> sortSubset(ArrayList<Entry> subset, Constants.SortMode sortMode) {
+        if (EntrySortIndex.supports(sortMode))
+            return sortIndex.getSorted(sortMode, subset);
+        else
+            return sortEntries(subset, sortMode);
+    }
+
+    // Shared by all comparators so the collation keys cached in the entries stay valid
+    static synchronized Collator getCollator() {
+        Locale locale = Locale.getDefault();
+
+        if (collator == null || !locale.equals(collatorLocale)) {
+            collator = Collator.getInstance(locale);
+            collator.setStrength(Collator.PRIMARY);
+            collatorLocale = locale;
+        }
+
+        return collator;
+    }
+
+    public static ArrayList<Entry> sortEntries(ArrayList<Entry> unsortedEntries, Constants.SortMode sortMode) {
+        ArrayList<Entry> sorted = new ArrayList<>(unsortedEntries);
+
+        if (sortMode == Constants.SortMode.ISSUER) {
+            Collections.sort(sorted, new IssuerComparator());
+        } else if (sortMode == Constants.SortMode.LABEL) {
+            Collections.sort(sorted, new LabelComparator());
+        } else if (sortMode == Constants.SortMode.LAST_USED) {
+            Collections.sort(sorted, new LastUsedComparator());
+        } else if (sortMode == Constants.SortMode.MOST_USED) {
+            Collections.sort(sorted, new MostUsedComparator());
+        }
+
+        return sorted;
+    }
+
+    public synchronized List<String> getAllTags() {
+        return tagIndex.getAllTags();
+    }
+
+    public synchronized boolean hasTag(String tag) {
+        return tagIndex.hasTag(tag);
+    }
+
+    public synchronized ArrayList<Entry> getFilteredEntries(CharSequence constraint, List<Constants.SearchIncludes> filterValues, Constants.SortMode sortMode) {
+        ArrayList<Entry> filtered;
+
+        if (constraint != null && constraint.length() != 0){
+            filtered = searchEntries(EntrySearchIndex.normalize(constraint.toString()), filterValues);
+        } else {
+            filtered = entries;
+        }
+
+        return sortSubset(filtered, sortMode);
+    }
+
+    public SearchSession newSearchSession() {
+        return new SearchSession();
+    }
+
+    // Matching entries in list order
+    private ArrayList<Entry> searchEntries(String query, List<Constants.SearchIncludes> filterValues) {
+        ArrayList<Entry> filtered = new ArrayList<>();
+        Set<Entry> matches = searchIndex.search(query, filterValues);
+
+        for (Entry e : entries) {
+            if (matches.contains(e))
+                filtered.add(e);
+        }
+
+        return filtered;
+    }
+
+    public synchronized ArrayList<Entry> getEntriesFilteredByTags(List<String> tags, boolean noTags, Constants.TagFunctionality tagFunctionality, Constants.SortMode sortMode) {
+        // Entries with no tags will always be shown if noTags is set
+        BitSet matches = tagIndex.filter(tags, noTags, tagFunctionality, entries.size());
+
+        ArrayList<Entry> matchingEntries = new ArrayList<>(matches.cardinality());
+        for (int i = matches.nextSetBit(0); i >= 0; i = matches.nextSetBit(i + 1)) {
+            matchingEntries.add(entries.get(i));
+        }
+
+        return sortSubset(matchingEntries, sortMode);
+    }
+
+    /**
+     * Search-as-you-type over the entries of this list. The last query and its result are kept, if
+     * the next query contains the previous one (e.g. one more character was typed) only the
+     * previous matches are checked again. Deleting characters or changing the list or the searched
+     * fields falls back to searching all entries.
+     *
+     * A session keeps state between searches, so it must only be used from one thread at a time.
+     */
+    public class SearchSession {
+        private String lastQuery = null;
+        private List<Constants.SearchIncludes> lastFilterValues = null;
+        private ArrayList<Entry> lastMatches = null;
+        private int lastVersion = 0;
+
+        private SearchSession() {}
+
+        public ArrayList<Entry> getFilteredEntries(CharSequence constraint, List<Constants.SearchIncludes> filterValues, Constants.SortMode sortMode) {
+            synchronized (EntryList.this) {
+                if (constraint == null || constraint.length() == 0) {
+                    lastQuery = null;
+                    lastMatches = null;
+
+                    return sortSubset(entries, sortMode);
+                }
+
+                String query = EntrySearchIndex.normalize(constraint.toString());
+                int version = modCount;
+
+                ArrayList<Entry> matches;
+
+                if (lastQuery != null && version == lastVersion && query.contains(lastQuery) && filterValues.equals(lastFilterValues))
+                    matches = searchIndex.refine(lastMatches, query, filterValues);
+                else
+                    matches = searchEntries(query, filterValues);
+
+                lastQuery = query;
+                lastFilterValues = new ArrayList<>(filterValues);
+                lastMatches = matches;
+                lastVersion = version;
+
+                return sortSubset(matches, sortMode);
+            }
+        }
+    }
+
+    public static class IssuerComparator implements Comparator<Entry> {
+        Collator collator;
+
+        IssuerComparator(){
+            collator = getCollator();
+        }
+
+        @Override
+        public int compare(Entry o1, Entry o2) {
+            return o1.getIssuerCollationKey(collator).compareTo(o2.getIssuerCollationKey(collator));
+        }
+    }
+
+    public static class LabelComparator implements Comparator<Entry> {
+        Collator collator;
+
+        LabelComparator(){
+            collator = getCollator();
+        }
+
+        @Override
+        public int compare(Entry o1, Entry o2) {
+            return o1.getLabelCollationKey(collator).compareTo(o2.getLabelCollationKey(collator));
+        }
+    }
+
+    public static class LastUsedComparator implements Comparator<Entry> {
+        @Override
+        public int compare(Entry o1, Entry o2) {
+            return Long.compare(o2.getLastUsed(), o1.getLastUsed());
+        }
+    }
+
+    public static class MostUsedComparator implements Comparator<Entry> {
+        @Override
+        public int compare(Entry o1, Entry o2) {
+            return Long.compare(o2.getUsedFrequency(), o1.getUsedFrequency());
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package org.shadowice.flocke.andotp.Database;
+
+import org.shadowice.flocke.andotp.Utilities.Constants;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * N-gram index over the lowercase label, issuer and tags of the entries. Queries of up to
+ * {@link #GRAM_LENGTH} characters are answered by a single lookup, longer queries intersect the
+ * postings of their n-grams and only check the remaining candidates.
+ *
+ * Entries are kept by identity, all methods are synchronized since searching happens on the
+ * worker thread of the filter while the list is changed on the main thread.
+ */
+class EntrySearchIndex {
+    private static final int GRAM_LENGTH = 3;
+    private static final char TAG_SEPARATOR = '\n';
+
+    private static final Constants.SearchIncludes[] FIELDS = Constants.SearchIncludes.values();
+
+    private final EnumMap<Constants.SearchIncludes, HashMap<String, Set<Entry>>> postings = new EnumMap<>(Constants.SearchIncludes.class);
+    private final IdentityHashMap<Entry, String[]> texts = new IdentityHashMap<>();
+
+    EntrySearchIndex() {
+        for (Constants.SearchIncludes field : FIELDS)
+            postings.put(field, new HashMap<>());
+    }
+
+    synchronized void put(Entry entry) {
+        remove(entry);
+
+        String[] entryTexts = new String[FIELDS.length];
+        for (Constants.SearchIncludes field : FIELDS) {
+            String text = normalize(getText(entry, field));
+
+            entryTexts[field.ordinal()] = text;
+            addGrams(postings.get(field), text, entry);
+        }
+
+        texts.put(entry, entryTexts);
+    }
+
+    synchronized void remove(Entry entry) {
+        String[] entryTexts = texts.remove(entry);
+
+        if (entryTexts != null) {
+            for (Constants.SearchIncludes field : FIELDS)
+                removeGrams(postings.get(field), entryTexts[field.ordinal()], entry);
+        }
+    }
+
+    synchronized void clear() {
+        texts.clear();
+
+        for (HashMap<String, Set<Entry>> fieldPostings : postings.values())
+            fieldPostings.clear();
+    }
+
+    /**
+     * @param query Lowercase text to search for
+     * @param fields Fields that are searched
+     * @return All entries that contain the query in at least one of the fields
+     */
+    synchronized Set<Entry> search(String query, List<Constants.SearchIncludes> fields) {
+        Set<Entry> matches = newEntrySet();
+
+        for (Constants.SearchIncludes field : fields) {
+            HashMap<String, Set<Entry>> fieldPostings = postings.get(field);
+
+            if (query.length() <= GRAM_LENGTH) {
+                Set<Entry> posting = fieldPostings.get(query);
+                if (posting != null)
+                    matches.addAll(posting);
+            } else {
+                searchLong(fieldPostings, field, query, matches);
+            }
+        }
+
+        return matches;
+    }
+
+    /**
+     * Narrows down the result of a previous search, only valid if the entries didn't change since
+     * and the new query contains the previous one.
+     *
+     * @param candidates Result of the previous search (in list order)
+     * @param query Lowercase text to search for
+     * @param fields Fields that are searched
+     * @return All candidates that contain the query in at least one of the fields (in the same order)
+     */
+    synchronized ArrayList<Entry> refine(List<Entry> candidates, String query, List<Constants.SearchIncludes> fields) {
+        ArrayList<Entry> matches = new ArrayList<>(candidates.size());
+
+        for (Entry candidate : candidates) {
+            String[] entryTexts = texts.get(candidate);
+
+            if (entryTexts == null)
+                continue;
+
+            for (Constants.SearchIncludes field : fields) {
+                if (entryTexts[field.ordinal()].contains(query)) {
+                    matches.add(candidate);
+                    break;
+                }
+            }
+        }
+
+        return matches;
+    }
+
+    private void searchLong(HashMap<String, Set<Entry>> fieldPostings, Constants.SearchIncludes field, String query, Set<Entry> matches) {
+        // Start with the rarest n-gram, every candidate has to contain all of them
+        Set<Entry> smallest = null;
+
+        for (int i = 0; i + GRAM_LENGTH <= query.length(); i++) {
+            Set<Entry> posting = fieldPostings.get(query.substring(i, i + GRAM_LENGTH));
+
+            if (posting == null)
+                return;
+
+            if (smallest == null || posting.size() < smallest.size())
+                smallest = posting;
+        }
+
+        for (Entry candidate : smallest) {
+            if (!matches.contains(candidate) && texts.get(candidate)[field.ordinal()].contains(query))
+                matches.add(candidate);
+        }
+    }
+
+    static String normalize(String text) {
+        return text != null ? text.toLowerCase() : "";
+    }
+
+    static Set<Entry> newEntrySet() {
+        return Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+
+    private static String getText(Entry entry, Constants.SearchIncludes field) {
+        switch (field) {
+            case LABEL:
+                return entry.getLabel();
+            case ISSUER:
+                return entry.getIssuer();
+            case TAGS:
+                // Queries never contain the separator, so matches can't span two tags
+                StringBuilder tags = new StringBuilder();
+                if (entry.getTags() != null) {
+                    for (String tag : entry.getTags())
+                        tags.append(tag).append(TAG_SEPARATOR);
+                }
+                return tags.toString();
+            default:
+                return "";
+        }
+    }
+
+    private static void addGrams(HashMap<String, Set<Entry>> fieldPostings, String text, Entry entry) {
+        for (int start = 0; start < text.length(); start++) {
+            for (int end = start + 1; end <= Math.min(start + GRAM_LENGTH, text.length()); end++) {
+                String gram = text.substring(start, end);
+
+                Set<Entry> posting = fieldPostings.get(gram);
+                if (posting == null) {
+                    posting = newEntrySet();
+                    fieldPostings.put(gram, posting);
+                }
+
+                posting.add(entry);
+            }
+        }
+    }
+
+    private static void removeGrams(HashMap<String, Set<Entry>> fieldPostings, String text, Entry entry) {
+        for (int start = 0; start < text.length(); start++) {
+            for (int end = start + 1; end <= Math.min(start + GRAM_LENGTH, text.length()); end++) {
+                String gram = text.substring(start, end);
+
+                Set<Entry> posting = fieldPostings.get(gram);
+                if (posting != null) {
+                    posting.remove(entry);
+
+                    if (posting.isEmpty())
+                        fieldPostings.remove(gram);
+                }
+            }
+        }
+    }
+}
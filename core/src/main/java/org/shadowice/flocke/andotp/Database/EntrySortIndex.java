@@ -0,0 +1,245 @@
+package org.shadowice.flocke.andotp.Database;
+
+import org.shadowice.flocke.andotp.Utilities.Constants;
+
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Presorted orders of the entries for the sort modes that compare text (issuer and label). The
+ * orders are kept up to date as entries are added, changed or removed, so the sorted list (or a
+ * sorted subset of it) can be taken without sorting again.
+ *
+ * Every entry is stored with the sort key it was inserted with and a rank that follows its
+ * position in the list (entries with equal keys keep the order of the list). So an entry is found
+ * by binary search even after it changed, and removing an entry doesn't change the ranks of the
+ * others. Only swapping two entries exchanges their ranks. The keys are taken with the shared
+ * collator of {@link EntryList#getCollator()}, the orders are sorted again when it changes (after
+ * the locale changed).
+ *
+ * Changes are only made from the thread that owns the list, the synchronization allows taking
+ * sorted copies from the worker thread of the filter.
+ */
+class EntrySortIndex {
+    private static final Constants.SortMode[] MODES = { Constants.SortMode.ISSUER, Constants.SortMode.LABEL };
+
+    private Collator collator = EntryList.getCollator();
+
+    private final EnumMap<Constants.SortMode, ArrayList<Node>> orders = new EnumMap<>(Constants.SortMode.class);
+
+    // Nodes of every entry, in the order of MODES
+    private final IdentityHashMap<Entry, Node[]> nodes = new IdentityHashMap<>();
+
+    // Rank of the next entry added to the end of the list
+    private long nextRank = 0;
+
+    private static class Node implements Comparable<Node> {
+        final Entry entry;
+        final CollationKey key;
+        final long rank;
+
+        Node(Entry entry, CollationKey key, long rank) {
+            this.entry = entry;
+            this.key = key;
+            this.rank = rank;
+        }
+
+        @Override
+        public int compareTo(Node other) {
+            int result = key.compareTo(other.key);
+            return result != 0 ? result : Long.compare(rank, other.rank);
+        }
+    }
+
+    EntrySortIndex() {
+        for (Constants.SortMode mode : MODES)
+            orders.put(mode, new ArrayList<>());
+    }
+
+    static boolean supports(Constants.SortMode mode) {
+        return mode == Constants.SortMode.ISSUER || mode == Constants.SortMode.LABEL;
+    }
+
+    /**
+     * @param entries All entries in the order of the list
+     */
+    synchronized void rebuild(List<Entry> entries) {
+        collator = EntryList.getCollator();
+
+        nodes.clear();
+        for (ArrayList<Node> order : orders.values())
+            order.clear();
+
+        nextRank = 0;
+
+        for (Entry entry : entries) {
+            Node[] entryNodes = newNodes(entry, nextRank++);
+            nodes.put(entry, entryNodes);
+
+            for (int i = 0; i < MODES.length; i++)
+                orders.get(MODES[i]).add(entryNodes[i]);
+        }
+
+        for (ArrayList<Node> order : orders.values())
+            Collections.sort(order);
+    }
+
+    /**
+     * Adds an entry that was appended to the end of the list.
+     */
+    synchronized void add(Entry entry) {
+        checkCollator();
+        insert(entry, nextRank++);
+    }
+
+    synchronized void remove(Entry entry) {
+        checkCollator();
+
+        Node[] entryNodes = nodes.remove(entry);
+        if (entryNodes == null)
+            return;
+
+        for (int i = 0; i < MODES.length; i++) {
+            ArrayList<Node> order = orders.get(MODES[i]);
+
+            int pos = Collections.binarySearch(order, entryNodes[i]);
+            if (pos >= 0)
+                order.remove(pos);
+        }
+    }
+
+    /**
+     * Sorts an entry in again after it changed, nothing is done if its sort keys are the same.
+     */
+    synchronized void update(Entry entry) {
+        checkCollator();
+
+        Node[] entryNodes = nodes.get(entry);
+        if (entryNodes != null &&
+                entry.getIssuerCollationKey(collator).compareTo(entryNodes[0].key) == 0 &&
+                entry.getLabelCollationKey(collator).compareTo(entryNodes[1].key) == 0)
+            return;
+
+        replace(entry, entry);
+    }
+
+    /**
+     * Puts a new entry at the place of an old one in the list.
+     */
+    synchronized void replace(Entry oldEntry, Entry newEntry) {
+        checkCollator();
+
+        long rank = getRank(oldEntry);
+
+        remove(oldEntry);
+        insert(newEntry, rank);
+    }
+
+    /**
+     * Exchanges the places of two entries in the list.
+     */
+    synchronized void swap(Entry first, Entry second) {
+        checkCollator();
+
+        long firstRank = getRank(first);
+        long secondRank = getRank(second);
+
+        remove(first);
+        remove(second);
+
+        insert(first, secondRank);
+        insert(second, firstRank);
+    }
+
+    synchronized ArrayList<Entry> getSorted(Constants.SortMode mode) {
+        checkCollator();
+
+        ArrayList<Node> order = orders.get(mode);
+
+        ArrayList<Entry> sorted = new ArrayList<>(order.size());
+        for (Node node : order)
+            sorted.add(node.entry);
+
+        return sorted;
+    }
+
+    /**
+     * @param mode Sort mode, has to be supported (see {@link #supports(Constants.SortMode)})
+     * @param subset Entries to sort, all of them have to be part of the list
+     * @return The subset in sorted order
+     */
+    synchronized ArrayList<Entry> getSorted(Constants.SortMode mode, Collection<Entry> subset) {
+        checkCollator();
+
+        ArrayList<Node> order = orders.get(mode);
+
+        if (subset.size() == order.size())
+            return getSorted(mode);
+
+        Set<Entry> members = EntrySearchIndex.newEntrySet();
+        members.addAll(subset);
+
+        ArrayList<Entry> sorted = new ArrayList<>(subset.size());
+        for (Node node : order) {
+            if (members.contains(node.entry))
+                sorted.add(node.entry);
+        }
+
+        return sorted;
+    }
+
+    // Takes the keys of all entries again if the shared collator changed, the ranks stay the same
+    private void checkCollator() {
+        Collator current = EntryList.getCollator();
+        if (current == collator)
+            return;
+
+        collator = current;
+
+        for (ArrayList<Node> order : orders.values())
+            order.clear();
+
+        for (Map.Entry<Entry, Node[]> item : nodes.entrySet()) {
+            Node[] entryNodes = newNodes(item.getKey(), item.getValue()[0].rank);
+            item.setValue(entryNodes);
+
+            for (int i = 0; i < MODES.length; i++)
+                orders.get(MODES[i]).add(entryNodes[i]);
+        }
+
+        for (ArrayList<Node> order : orders.values())
+            Collections.sort(order);
+    }
+
+    private long getRank(Entry entry) {
+        Node[] entryNodes = nodes.get(entry);
+        return entryNodes != null ? entryNodes[0].rank : nextRank++;
+    }
+
+    private void insert(Entry entry, long rank) {
+        Node[] entryNodes = newNodes(entry, rank);
+        nodes.put(entry, entryNodes);
+
+        for (int i = 0; i < MODES.length; i++) {
+            ArrayList<Node> order = orders.get(MODES[i]);
+
+            int pos = Collections.binarySearch(order, entryNodes[i]);
+            order.add(pos < 0 ? -(pos + 1) : pos, entryNodes[i]);
+        }
+    }
+
+    private Node[] newNodes(Entry entry, long rank) {
+        return new Node[] {
+                new Node(entry, entry.getIssuerCollationKey(collator), rank),
+                new Node(entry, entry.getLabelCollationKey(collator), rank)
+        };
+    }
+}
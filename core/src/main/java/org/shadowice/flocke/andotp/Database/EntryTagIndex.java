@@ -0,0 +1,148 @@
+package org.shadowice.flocke.andotp.Database;
+
+import org.shadowice.flocke.andotp.Utilities.Constants;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Positions of the entries in the list for every tag (and for entries without tags) as bit sets,
+ * so filtering by tags only needs a union or intersection of a few bit sets.
+ */
+class EntryTagIndex {
+    private final HashMap<String, BitSet> tagPositions = new HashMap<>();
+    private final BitSet untagged = new BitSet();
+
+    // Rebuilt on demand after a tag was added or removed
+    private List<String> allTags = null;
+
+    void set(int pos, Entry entry) {
+        List<String> tags = entry.getTags();
+
+        if (tags == null || tags.isEmpty()) {
+            untagged.set(pos);
+            return;
+        }
+
+        for (String tag : tags) {
+            BitSet positions = tagPositions.get(tag);
+
+            if (positions == null) {
+                positions = new BitSet();
+                tagPositions.put(tag, positions);
+                allTags = null;
+            }
+
+            positions.set(pos);
+        }
+    }
+
+    void clear(int pos) {
+        untagged.clear(pos);
+
+        Iterator<Map.Entry<String, BitSet>> it = tagPositions.entrySet().iterator();
+        while (it.hasNext()) {
+            BitSet positions = it.next().getValue();
+            positions.clear(pos);
+
+            if (positions.isEmpty()) {
+                it.remove();
+                allTags = null;
+            }
+        }
+    }
+
+    /**
+     * Removes the entry at the given position, all following entries move up by one.
+     */
+    void remove(int pos) {
+        removeBit(untagged, pos);
+
+        Iterator<Map.Entry<String, BitSet>> it = tagPositions.entrySet().iterator();
+        while (it.hasNext()) {
+            BitSet positions = it.next().getValue();
+            removeBit(positions, pos);
+
+            if (positions.isEmpty()) {
+                it.remove();
+                allTags = null;
+            }
+        }
+    }
+
+    void clear() {
+        tagPositions.clear();
+        untagged.clear();
+        allTags = null;
+    }
+
+    boolean hasTag(String tag) {
+        return tagPositions.containsKey(tag);
+    }
+
+    List<String> getAllTags() {
+        if (allTags == null)
+            allTags = Collections.unmodifiableList(new ArrayList<>(tagPositions.keySet()));
+
+        return allTags;
+    }
+
+    // Shifts all bits after pos down by one, only the set bits are visited
+    private static void removeBit(BitSet bits, int pos) {
+        int length = bits.length();
+        if (length <= pos)
+            return;
+
+        BitSet following = bits.get(pos + 1, length);
+        bits.clear(pos, length);
+
+        for (int i = following.nextSetBit(0); i >= 0; i = following.nextSetBit(i + 1))
+            bits.set(pos + i);
+    }
+
+    /**
+     * @param tags Tags to filter for
+     * @param noTags Include entries without any tags
+     * @param tagFunctionality Match all (AND) or any (OR) of the tags
+     * @param size Number of entries in the list
+     * @return Positions of all matching entries
+     */
+    BitSet filter(List<String> tags, boolean noTags, Constants.TagFunctionality tagFunctionality, int size) {
+        BitSet matches;
+
+        if (tagFunctionality == Constants.TagFunctionality.AND) {
+            matches = new BitSet(size);
+            matches.set(0, size);
+
+            for (String tag : tags) {
+                BitSet positions = tagPositions.get(tag);
+
+                if (positions == null) {
+                    matches.clear();
+                    break;
+                }
+
+                matches.and(positions);
+            }
+        } else {
+            matches = new BitSet(size);
+
+            for (String tag : tags) {
+                BitSet positions = tagPositions.get(tag);
+
+                if (positions != null)
+                    matches.or(positions);
+            }
+        }
+
+        if (noTags)
+            matches.or(untagged);
+
+        return matches;
+    }
+}
@@ -0,0 +1,108 @@
+package org.shadowice.flocke.andotp.Utilities;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Primitives of the binary database format: unsigned LEB128 varints and length prefixed byte
+ * arrays and strings. Strings are stored with their length plus one so null can be told apart
+ * from an empty string.
+ */
+public class BinaryHelper {
+    // Longer varints don't fit into a long anymore
+    private static final int MAX_VARINT_BYTES = 10;
+
+    public static void writeVarLong(DataOutput out, long value)
+            throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+
+        out.writeByte((int) value);
+    }
+
+    public static long readVarLong(DataInput in)
+            throws IOException {
+        long value = 0;
+
+        for (int i = 0; i < MAX_VARINT_BYTES; i++) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << (7 * i);
+
+            if ((b & 0x80) == 0)
+                return value;
+        }
+
+        throw new IOException("Invalid varint");
+    }
+
+    public static void writeVarInt(DataOutput out, int value)
+            throws IOException {
+        writeVarLong(out, value & 0xFFFFFFFFL);
+    }
+
+    public static int readVarInt(DataInput in)
+            throws IOException {
+        long value = readVarLong(in);
+
+        if (value > 0xFFFFFFFFL)
+            throw new IOException("Invalid varint");
+
+        return (int) value;
+    }
+
+    /**
+     * Reads a non-negative length or index that has to be smaller than {@code limit}.
+     */
+    public static int readLength(DataInput in, int limit)
+            throws IOException {
+        long value = readVarLong(in);
+
+        if (value >= limit)
+            throw new IOException("Invalid length " + value);
+
+        return (int) value;
+    }
+
+    public static void writeBytes(DataOutput out, byte[] value)
+            throws IOException {
+        writeVarInt(out, value.length);
+        out.write(value);
+    }
+
+    public static byte[] readBytes(DataInput in, int limit)
+            throws IOException {
+        byte[] value = new byte[readLength(in, limit)];
+        in.readFully(value);
+
+        return value;
+    }
+
+    public static void writeString(DataOutput out, String value)
+            throws IOException {
+        if (value == null) {
+            writeVarInt(out, 0);
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+
+            writeVarInt(out, bytes.length + 1);
+            out.write(bytes);
+        }
+    }
+
+    public static String readString(DataInput in, int limit)
+            throws IOException {
+        int length = readLength(in, limit);
+
+        if (length == 0)
+            return null;
+
+        byte[] bytes = new byte[length - 1];
+        in.readFully(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,349 @@
+package org.shadowice.flocke.andotp.Utilities;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+/**
+ * Segmented AES-GCM encryption (following the STREAM construction): the data is split into chunks
+ * that are encrypted and authenticated on their own, so it can be processed with constant memory
+ * and every chunk is verified before its plaintext is handed out.
+ *
+ * Format: magic, version, chunk size and a random nonce prefix as header, followed by the
+ * encrypted chunks. The nonce of a chunk is the prefix, the chunk index and a flag marking the last
+ * chunk, which prevents reordering and truncation. The header is authenticated with every chunk.
+ */
+public class ChunkedEncryptionHelper {
+    private static final byte[] MAGIC = { 'A', 'O', 'T', 'C' };
+    private static final int VERSION = 1;
+
+    private static final int NONCE_PREFIX_LENGTH = 7;
+    private static final int HEADER_LENGTH = MAGIC.length + 1 + 4 + NONCE_PREFIX_LENGTH;
+    private static final int TAG_BYTES = Constants.ENCRYPTION_TAG_LENGTH / 8;
+
+    public static final int DEFAULT_CHUNK_SIZE = 16 * 1024;
+    private static final int MAX_CHUNK_SIZE = 1 << 20;
+
+    /**
+     * @return True if the data starts like the output of {@link #encrypt(SecretKey, OutputStream)}
+     */
+    public static boolean isChunked(byte[] data, int offset, int length) {
+        if (length < MAGIC.length)
+            return false;
+
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (data[offset + i] != MAGIC[i])
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Checks the start of the stream without consuming it, the stream has to support mark/reset.
+     */
+    public static boolean isChunked(InputStream in)
+            throws IOException {
+        byte[] start = new byte[MAGIC.length];
+
+        in.mark(start.length);
+        int length = readFully(in, start, 0, start.length);
+        in.reset();
+
+        return isChunked(start, 0, length);
+    }
+
+    public static OutputStream encrypt(SecretKey secretKey, OutputStream out)
+            throws GeneralSecurityException, IOException {
+        return encrypt(secretKey, out, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Writes the header right away and returns a stream that encrypts everything written to it.
+     * Closing the returned stream writes the last chunk and closes out.
+     */
+    public static OutputStream encrypt(SecretKey secretKey, OutputStream out, int chunkSize)
+            throws GeneralSecurityException, IOException {
+        byte[] noncePrefix = EncryptionHelper.generateRandom(NONCE_PREFIX_LENGTH);
+
+        byte[] header = ByteBuffer.allocate(HEADER_LENGTH)
+                .put(MAGIC)
+                .put((byte) VERSION)
+                .putInt(chunkSize)
+                .put(noncePrefix)
+                .array();
+
+        out.write(header);
+
+        return new EncryptingStream(out, CipherPool.obtain(Constants.ALGORITHM_SYMMETRIC, secretKey), secretKey, header, chunkSize);
+    }
+
+    /**
+     * Reads the header and returns a stream with the decrypted data. Chunks that fail to
+     * authenticate, as well as missing chunks at the end, are reported as IOException.
+     */
+    public static InputStream decrypt(SecretKey secretKey, InputStream in)
+            throws GeneralSecurityException, IOException {
+        byte[] header = new byte[HEADER_LENGTH];
+
+        if (readFully(in, header, 0, header.length) < header.length || !isChunked(header, 0, header.length))
+            throw new IOException("Not a chunked encrypted stream");
+
+        if (header[MAGIC.length] != VERSION)
+            throw new IOException("Unsupported version " + header[MAGIC.length]);
+
+        int chunkSize = ByteBuffer.wrap(header, MAGIC.length + 1, 4).getInt();
+        if (chunkSize <= 0 || chunkSize > MAX_CHUNK_SIZE)
+            throw new IOException("Invalid chunk size " + chunkSize);
+
+        return new DecryptingStream(in, CipherPool.obtain(Constants.ALGORITHM_SYMMETRIC, secretKey), secretKey, header, chunkSize);
+    }
+
+    private static byte[] nonce(byte[] header, int index, boolean last) {
+        return ByteBuffer.allocate(Constants.ENCRYPTION_IV_LENGTH)
+                .put(header, HEADER_LENGTH - NONCE_PREFIX_LENGTH, NONCE_PREFIX_LENGTH)
+                .putInt(index)
+                .put((byte) (last ? 1 : 0))
+                .array();
+    }
+
+    private static int readFully(InputStream in, byte[] buffer, int offset, int length)
+            throws IOException {
+        int total = 0;
+
+        while (total < length) {
+            int count = in.read(buffer, offset + total, length - total);
+
+            if (count < 0)
+                break;
+
+            total += count;
+        }
+
+        return total;
+    }
+
+    private static class EncryptingStream extends FilterOutputStream {
+        private final Cipher cipher;
+        private final SecretKey secretKey;
+        private final byte[] header;
+
+        private final byte[] chunk;
+        private final byte[] encrypted;
+        private int chunkLength = 0;
+        private int index = 0;
+        private boolean closed = false;
+
+        EncryptingStream(OutputStream out, Cipher cipher, SecretKey secretKey, byte[] header, int chunkSize) {
+            super(out);
+
+            this.cipher = cipher;
+            this.secretKey = secretKey;
+            this.header = header;
+            this.chunk = new byte[chunkSize];
+            this.encrypted = new byte[chunkSize + TAG_BYTES];
+        }
+
+        @Override
+        public void write(int b)
+                throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len)
+                throws IOException {
+            while (len > 0) {
+                // Only written once more data follows, the last chunk has to be marked as such
+                if (chunkLength == chunk.length)
+                    writeChunk(false);
+
+                int count = Math.min(len, chunk.length - chunkLength);
+                System.arraycopy(b, off, chunk, chunkLength, count);
+
+                chunkLength += count;
+                off += count;
+                len -= count;
+            }
+        }
+
+        @Override
+        public void flush() {
+            // Chunks are written as they fill up, flushing a partial chunk would end the stream
+        }
+
+        @Override
+        public void close()
+                throws IOException {
+            if (closed)
+                return;
+
+            closed = true;
+
+            try {
+                writeChunk(true);
+                out.flush();
+            } finally {
+                Arrays.fill(chunk, (byte) 0);
+                CipherPool.release(Constants.ALGORITHM_SYMMETRIC, secretKey, cipher);
+                out.close();
+            }
+        }
+
+        private void writeChunk(boolean last)
+                throws IOException {
+            if (index == Integer.MAX_VALUE)
+                throw new IOException("Too many chunks");
+
+            try {
+                cipher.init(Cipher.ENCRYPT_MODE, secretKey, new GCMParameterSpec(Constants.ENCRYPTION_TAG_LENGTH, nonce(header, index, last)));
+                cipher.updateAAD(header);
+
+                int length = cipher.doFinal(chunk, 0, chunkLength, encrypted, 0);
+                out.write(encrypted, 0, length);
+            } catch (GeneralSecurityException error) {
+                throw new IOException(error);
+            }
+
+            index++;
+            chunkLength = 0;
+        }
+    }
+
+    private static class DecryptingStream extends FilterInputStream {
+        private final Cipher cipher;
+        private final SecretKey secretKey;
+        private final byte[] header;
+
+        // One byte more than a full chunk, to see whether another chunk follows
+        private final byte[] encrypted;
+        private int encryptedLength = 0;
+
+        private final byte[] chunk;
+        private int chunkOffset = 0;
+        private int chunkLength = 0;
+
+        private int index = 0;
+        private boolean finished = false;
+        private boolean closed = false;
+
+        DecryptingStream(InputStream in, Cipher cipher, SecretKey secretKey, byte[] header, int chunkSize) {
+            super(in);
+
+            this.cipher = cipher;
+            this.secretKey = secretKey;
+            this.header = header;
+            this.encrypted = new byte[chunkSize + TAG_BYTES + 1];
+            this.chunk = new byte[chunkSize];
+        }
+
+        @Override
+        public int read()
+                throws IOException {
+            byte[] b = new byte[1];
+            int count = read(b, 0, 1);
+
+            return count < 0 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len)
+                throws IOException {
+            if (len == 0)
+                return 0;
+
+            while (chunkOffset == chunkLength) {
+                if (finished)
+                    return -1;
+
+                readChunk();
+            }
+
+            int count = Math.min(len, chunkLength - chunkOffset);
+            System.arraycopy(chunk, chunkOffset, b, off, count);
+            chunkOffset += count;
+
+            return count;
+        }
+
+        @Override
+        public long skip(long n)
+                throws IOException {
+            long skipped = 0;
+            byte[] buffer = new byte[(int) Math.min(n, 4096)];
+
+            while (skipped < n) {
+                int count = read(buffer, 0, (int) Math.min(n - skipped, buffer.length));
+
+                if (count < 0)
+                    break;
+
+                skipped += count;
+            }
+
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return chunkLength - chunkOffset;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close()
+                throws IOException {
+            if (!closed) {
+                closed = true;
+
+                Arrays.fill(chunk, (byte) 0);
+                CipherPool.release(Constants.ALGORITHM_SYMMETRIC, secretKey, cipher);
+            }
+
+            super.close();
+        }
+
+        private void readChunk()
+                throws IOException {
+            encryptedLength += readFully(in, encrypted, encryptedLength, encrypted.length - encryptedLength);
+
+            boolean last = encryptedLength < encrypted.length;
+            int length = last ? encryptedLength : encrypted.length - 1;
+
+            if (length < TAG_BYTES)
+                throw new IOException("Encrypted data is truncated");
+
+            try {
+                cipher.init(Cipher.DECRYPT_MODE, secretKey, new GCMParameterSpec(Constants.ENCRYPTION_TAG_LENGTH, nonce(header, index, last)));
+                cipher.updateAAD(header);
+
+                chunkLength = cipher.doFinal(encrypted, 0, length, chunk, 0);
+                chunkOffset = 0;
+            } catch (GeneralSecurityException error) {
+                throw new IOException("Chunk " + index + " failed to authenticate", error);
+            }
+
+            // Keep the byte that was read ahead
+            if (!last) {
+                encrypted[0] = encrypted[length];
+                encryptedLength = 1;
+            }
+
+            index++;
+            finished = last;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package org.shadowice.flocke.andotp.Utilities;
+
+import java.security.Key;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.crypto.Cipher;
+import javax.crypto.NoSuchPaddingException;
+
+/**
+ * Thread-confined pool of Cipher objects, so the provider lookup isn't repeated for every record or
+ * key that is encrypted. A cipher is taken from the pool of the current thread and has to be
+ * returned with {@link #release(String, Key, Cipher)} once it is no longer used, a cipher that is
+ * still in use (e.g. by a stream) is never handed out twice. The caller always initializes it.
+ *
+ * Ciphers are pooled per transformation and type of key: a cipher is bound to the provider chosen
+ * by its first key (e.g. the Android key store), so it can't be used with keys of another provider.
+ *
+ * Idle ciphers still hold the key schedule of the key they were last used with, {@link #clear()}
+ * drops them when the keys are removed from memory.
+ */
+class CipherPool {
+    // Idle ciphers kept per thread, transformation and type of key
+    private static final int MAX_IDLE = 4;
+
+    private static final ThreadLocal<ThreadPools> pools = new ThreadLocal<>();
+
+    // Increased by clear(), pools of an older generation are dropped on their next use
+    private static final AtomicInteger generation = new AtomicInteger();
+
+    private static class ThreadPools {
+        final int generation;
+        final HashMap<String, ArrayDeque<Cipher>> pools = new HashMap<>();
+
+        ThreadPools(int generation) {
+            this.generation = generation;
+        }
+    }
+
+    static Cipher obtain(String transformation, Key key)
+            throws NoSuchAlgorithmException, NoSuchPaddingException {
+        ArrayDeque<Cipher> pool = getPool(transformation, key);
+
+        Cipher cipher = pool.pollLast();
+        if (cipher == null)
+            cipher = Cipher.getInstance(transformation);
+
+        return cipher;
+    }
+
+    static void release(String transformation, Key key, Cipher cipher) {
+        ArrayDeque<Cipher> pool = getPool(transformation, key);
+
+        if (pool.size() < MAX_IDLE)
+            pool.addLast(cipher);
+    }
+
+    /**
+     * Drops the idle ciphers of all threads: right away for the current thread, on their next use
+     * for all other threads.
+     */
+    static void clear() {
+        generation.incrementAndGet();
+        pools.remove();
+    }
+
+    private static ArrayDeque<Cipher> getPool(String transformation, Key key) {
+        ThreadPools threadPools = pools.get();
+        int current = generation.get();
+
+        if (threadPools == null || threadPools.generation != current) {
+            threadPools = new ThreadPools(current);
+            pools.set(threadPools);
+        }
+
+        String poolKey = transformation + "/" + key.getClass().getName();
+
+        ArrayDeque<Cipher> pool = threadPools.pools.get(poolKey);
+        if (pool == null) {
+            pool = new ArrayDeque<>();
+            threadPools.pools.put(poolKey, pool);
+        }
+
+        return pool;
+    }
+}
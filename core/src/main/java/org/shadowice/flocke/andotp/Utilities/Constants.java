@@ -107,6 +107,7 @@ public class Constants {
 
     final static int ENCRYPTION_KEY_LENGTH  = 16;           // 128-bit encryption key (KeyStore-mode)
     public final static int ENCRYPTION_IV_LENGTH   = 12;
+    final static int ENCRYPTION_TAG_LENGTH  = 128;          // GCM authentication tag in bits
 
     public final static int INT_LENGTH = 4;
 
@@ -136,6 +137,8 @@ public class Constants {
     public final static String FILENAME_ENCRYPTED_KEY   = "otp.key";
     public final static String FILENAME_DATABASE        = "secrets.dat";
     public final static String FILENAME_DATABASE_BACKUP = "secrets.dat.bck";
+    public final static String FILENAME_JOURNAL         = "secrets.log";
+    public final static String FILENAME_JOURNAL_BACKUP  = "secrets.log.bck";
 
     // Backup files
     public final static String BACKUP_FILENAME_PLAIN    = "otp_accounts.json";
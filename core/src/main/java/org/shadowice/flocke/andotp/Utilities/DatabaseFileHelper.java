@@ -0,0 +1,448 @@
+package org.shadowice.flocke.andotp.Utilities;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.shadowice.flocke.andotp.Database.Entry;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.crypto.SecretKey;
+
+/**
+ * Platform independent part of the database handling: the conversion of the entries and
+ * reading/writing the encrypted database file. Locking, notifications and the location of the file
+ * are up to the caller (see DatabaseHelper in the app).
+ *
+ * The database is stored in a compact binary format and encrypted in chunks (see
+ * {@link ChunkedEncryptionHelper}). Databases of older versions (JSON, encrypted as a whole) are
+ * still read and can be migrated. Backups keep using JSON.
+ */
+public class DatabaseFileHelper {
+    private static final byte[] BINARY_MAGIC = { 'A', 'O', 'T', 'P' };
+    private static final int BINARY_VERSION = 1;
+
+    // Upper bound for a single string or entry, protects against allocating absurd buffers
+    private static final int MAX_RECORD_SIZE = 1 << 20;
+
+    // Size of the first batch handed to a ReadListener, every following batch is twice as large
+    private static final int FIRST_BATCH_SIZE = 16;
+
+    /**
+     * Notified while the entries are read, e.g. to display them before the whole database is read.
+     */
+    public interface ReadListener {
+        /**
+         * @param entries Entries read since the last call, in the order of the database. The entries
+         *                read last are only part of the list returned in the end.
+         */
+        void onEntriesRead(List<Entry> entries);
+    }
+
+    public static void writeDatabase(File file, ArrayList<Entry> entries, SecretKey encryptionKey)
+            throws GeneralSecurityException, IOException {
+        writeEncrypted(file, encryptionKey, plain -> writeBinaryEntries(plain, entries));
+    }
+
+    /**
+     * Writes entries that were already encoded with {@link #entriesToBytes(List)}, which allows
+     * taking a snapshot of the entries on one thread and encrypting and writing it on another.
+     */
+    public static void writeDatabase(File file, byte[] data, SecretKey encryptionKey)
+            throws GeneralSecurityException, IOException {
+        writeEncrypted(file, encryptionKey, plain -> plain.write(data));
+    }
+
+    private interface PlainWriter {
+        void write(OutputStream plain) throws IOException;
+    }
+
+    private static void writeEncrypted(File file, SecretKey encryptionKey, PlainWriter writer)
+            throws GeneralSecurityException, IOException {
+        // The old database stays in place until the new one is completely written
+        try {
+            OutputStream out = new BufferedOutputStream(FileHelper.startAtomicWrite(file));
+
+            try {
+                OutputStream plain = new BufferedOutputStream(ChunkedEncryptionHelper.encrypt(encryptionKey, out));
+
+                writer.write(plain);
+
+                // Finishes the encryption and closes out (only once, closing it syncs the file)
+                plain.close();
+            } catch (GeneralSecurityException | IOException | RuntimeException error) {
+                try {
+                    out.close();
+                } catch (IOException ignored) {
+                    // The write failed already
+                }
+
+                throw error;
+            }
+
+            FileHelper.finishAtomicWrite(file);
+        } finally {
+            FileHelper.failAtomicWrite(file);
+        }
+    }
+
+    public static ArrayList<Entry> readDatabase(File file, SecretKey encryptionKey)
+            throws GeneralSecurityException, IOException {
+        return readDatabase(file, encryptionKey, false);
+    }
+
+    public static ArrayList<Entry> readDatabase(File file, SecretKey encryptionKey, boolean migrate)
+            throws GeneralSecurityException, IOException {
+        return readDatabase(file, encryptionKey, migrate, null);
+    }
+
+    /**
+     * @param migrate Rewrite a database in the format of older versions in the current format, only
+     *                once the whole file was read and authenticated. A failed migration is logged
+     *                and leaves the file as it was, the entries are returned anyway.
+     * @param listener Notified with batches of entries while reading, can be null
+     */
+    public static ArrayList<Entry> readDatabase(File file, SecretKey encryptionKey, boolean migrate, ReadListener listener)
+            throws GeneralSecurityException, IOException {
+        ArrayList<Entry> entries;
+        boolean chunked;
+        boolean binary;
+
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            chunked = ChunkedEncryptionHelper.isChunked(in);
+            InputStream decrypted = chunked ? ChunkedEncryptionHelper.decrypt(encryptionKey, in) : EncryptionHelper.decrypt(encryptionKey, in);
+
+            // Closing the decrypting stream returns its cipher to the pool
+            try (InputStream plain = new BufferedInputStream(decrypted)) {
+                plain.mark(BINARY_MAGIC.length);
+                binary = hasBinaryMagic(plain);
+                plain.reset();
+
+                if (binary)
+                    entries = readBinaryEntries(plain, listener);
+                else
+                    entries = readEntries(new BufferedReader(new InputStreamReader(plain, StandardCharsets.UTF_8)), listener);
+
+                // Reading to the end also verifies the authentication tag of the legacy format
+                if (plain.read() != -1)
+                    throw new IOException("Unexpected data after the entries");
+            }
+        }
+
+        if (migrate && !(binary && chunked)) {
+            try {
+                writeDatabase(file, entries, encryptionKey);
+            } catch (GeneralSecurityException | IOException | RuntimeException error) {
+                error.printStackTrace();
+            }
+        }
+
+        return entries;
+    }
+
+    /* Conversion functions */
+
+    public static String entriesToString(ArrayList<Entry> entries) {
+        StringWriter writer = new StringWriter();
+
+        try {
+            writeEntries(writer, entries);
+        } catch (IOException error) {
+            error.printStackTrace();
+        }
+
+        return writer.toString();
+    }
+
+    public static byte[] entriesToBytes(List<Entry> entries) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        try {
+            writeBinaryEntries(out, entries);
+        } catch (IOException error) {
+            error.printStackTrace();
+        }
+
+        return out.toByteArray();
+    }
+
+    /**
+     * @return The entries, for malformed data only the entries before the error (see
+     *         {@link #readEntries(Reader)} to find out about the error)
+     */
+    public static ArrayList<Entry> stringToEntries(String data) {
+        try {
+            return readEntries(new StringReader(data));
+        } catch (MalformedEntriesException error) {
+            error.printStackTrace();
+            return error.getEntries();
+        } catch (IOException error) {
+            error.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Writes the entries in the binary format: magic and version, a table of all tags and the
+     * length prefixed entries (see {@link Entry#writeBinary(DataOutput, Map)}). The length prefix
+     * allows later versions to append fields to an entry.
+     */
+    public static void writeBinaryEntries(OutputStream out, List<Entry> entries)
+            throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+
+        LinkedHashMap<String, Integer> tagIndices = new LinkedHashMap<>();
+        for (Entry e : entries) {
+            for (String tag : e.getTags()) {
+                if (!tagIndices.containsKey(tag))
+                    tagIndices.put(tag, tagIndices.size());
+            }
+        }
+
+        data.write(BINARY_MAGIC);
+        BinaryHelper.writeVarInt(data, BINARY_VERSION);
+
+        BinaryHelper.writeVarInt(data, tagIndices.size());
+        for (String tag : tagIndices.keySet())
+            BinaryHelper.writeString(data, tag);
+
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        DataOutputStream recordData = new DataOutputStream(record);
+
+        BinaryHelper.writeVarInt(data, entries.size());
+        for (Entry e : entries) {
+            record.reset();
+            e.writeBinary(recordData, tagIndices);
+
+            BinaryHelper.writeVarInt(data, record.size());
+            record.writeTo(data);
+        }
+
+        data.flush();
+    }
+
+    /**
+     * Reads entries written by {@link #writeBinaryEntries(OutputStream, List)}.
+     */
+    public static ArrayList<Entry> readBinaryEntries(InputStream in)
+            throws IOException {
+        return readBinaryEntries(in, null);
+    }
+
+    public static ArrayList<Entry> readBinaryEntries(InputStream in, ReadListener listener)
+            throws IOException {
+        DataInputStream data = new DataInputStream(in);
+
+        if (!hasBinaryMagic(data))
+            throw new IOException("Not a binary database");
+
+        int version = BinaryHelper.readVarInt(data);
+        if (version < 1 || version > BINARY_VERSION)
+            throw new IOException("Unsupported database version " + version);
+
+        int tagCount = BinaryHelper.readLength(data, Integer.MAX_VALUE);
+        ArrayList<String> tagTable = new ArrayList<>(Math.min(tagCount, 1024));
+        for (int i = 0; i < tagCount; i++)
+            tagTable.add(BinaryHelper.readString(data, MAX_RECORD_SIZE));
+
+        int entryCount = BinaryHelper.readLength(data, Integer.MAX_VALUE);
+        ArrayList<Entry> entries = new ArrayList<>(Math.min(entryCount, 1024));
+        BatchNotifier notifier = new BatchNotifier(listener, entries);
+
+        for (int i = 0; i < entryCount; i++) {
+            byte[] record = new byte[BinaryHelper.readLength(data, MAX_RECORD_SIZE)];
+            data.readFully(record);
+
+            entries.add(new Entry(new DataInputStream(new ByteArrayInputStream(record)), record.length + 1, tagTable));
+            notifier.entryRead();
+        }
+
+        return entries;
+    }
+
+    private static boolean hasBinaryMagic(InputStream in)
+            throws IOException {
+        for (byte b : BINARY_MAGIC) {
+            if (in.read() != b)
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Writes the entries as a JSON array, one entry after the other, so only the JSON of a single
+     * entry has to be kept in memory.
+     */
+    public static void writeEntries(Writer writer, List<Entry> entries)
+            throws IOException {
+        boolean first = true;
+
+        writer.write('[');
+
+        for (Entry e : entries) {
+            try {
+                String json = e.toJSON().toString();
+
+                if (!first)
+                    writer.write(',');
+
+                writer.write(json);
+                first = false;
+            } catch (JSONException error) {
+                error.printStackTrace();
+            }
+        }
+
+        writer.write(']');
+        writer.flush();
+    }
+
+    /**
+     * Reads a JSON array of entries written by {@link #writeEntries(Writer, List)}. The array is
+     * split into its objects while reading, only the text of the current entry is kept in memory
+     * (the org.json of Android can only parse complete strings).
+     *
+     * @throws MalformedEntriesException If the data isn't a complete array of valid entries, the
+     *                                   exception holds the entries read before the error
+     */
+    public static ArrayList<Entry> readEntries(Reader reader)
+            throws IOException {
+        return readEntries(reader, null);
+    }
+
+    public static ArrayList<Entry> readEntries(Reader reader, ReadListener listener)
+            throws IOException {
+        ArrayList<Entry> entries = new ArrayList<>();
+        BatchNotifier notifier = new BatchNotifier(listener, entries);
+        StringBuilder object = new StringBuilder();
+
+        boolean inArray = false;
+        boolean finished = false;
+        boolean inString = false;
+        boolean escaped = false;
+        int depth = 0;
+
+        int c;
+        while ((c = reader.read()) != -1) {
+            char ch = (char) c;
+
+            if (!inArray || finished) {
+                if (!inArray && ch == '[')
+                    inArray = true;
+                else if (!Character.isWhitespace(ch))
+                    throw new MalformedEntriesException("Unexpected character " + ch + " outside of the array", entries, null);
+
+                continue;
+            }
+
+            if (depth == 0) {
+                if (ch == '{') {
+                    object.setLength(0);
+                    object.append(ch);
+                    depth = 1;
+                } else if (ch == ']') {
+                    finished = true;
+                } else if (ch != ',' && !Character.isWhitespace(ch)) {
+                    throw new MalformedEntriesException("Unexpected character " + ch + " between entries", entries, null);
+                }
+
+                continue;
+            }
+
+            object.append(ch);
+
+            if (inString) {
+                if (escaped)
+                    escaped = false;
+                else if (ch == '\\')
+                    escaped = true;
+                else if (ch == '"')
+                    inString = false;
+            } else if (ch == '"') {
+                inString = true;
+            } else if (ch == '{' || ch == '[') {
+                depth++;
+            } else if (ch == '}' || ch == ']') {
+                depth--;
+
+                if (depth == 0) {
+                    try {
+                        entries.add(new Entry(new JSONObject(object.toString())));
+                    } catch (Exception error) {
+                        throw new MalformedEntriesException("Invalid entry " + entries.size(), entries, error);
+                    }
+
+                    notifier.entryRead();
+                }
+            }
+        }
+
+        if (!finished)
+            throw new MalformedEntriesException("Unexpected end of the entries", entries, null);
+
+        return entries;
+    }
+
+    /**
+     * The data isn't a complete array of valid entries, the entries before the error are kept.
+     */
+    public static class MalformedEntriesException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        private final ArrayList<Entry> entries;
+
+        MalformedEntriesException(String message, ArrayList<Entry> entries, Throwable cause) {
+            super(message, cause);
+            this.entries = entries;
+        }
+
+        public ArrayList<Entry> getEntries() {
+            return entries;
+        }
+    }
+
+    // Hands out the entries in growing batches, so the number of notifications stays logarithmic
+    private static class BatchNotifier {
+        private final ReadListener listener;
+        private final List<Entry> entries;
+        private int notified = 0;
+        private int batchSize = FIRST_BATCH_SIZE;
+
+        BatchNotifier(ReadListener listener, List<Entry> entries) {
+            this.listener = listener;
+            this.entries = entries;
+        }
+
+        void entryRead() {
+            if (listener != null && entries.size() - notified >= batchSize) {
+                listener.onEntriesRead(new ArrayList<>(entries.subList(notified, entries.size())));
+
+                notified = entries.size();
+                batchSize *= 2;
+            }
+        }
+    }
+}
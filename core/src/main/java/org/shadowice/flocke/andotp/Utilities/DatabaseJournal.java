@@ -0,0 +1,275 @@
+package org.shadowice.flocke.andotp.Utilities;
+
+import org.shadowice.flocke.andotp.Database.Entry;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import javax.crypto.SecretKey;
+
+/**
+ * Append-only log of changes to the entries that were made since the database file was last
+ * written, so a single change doesn't require writing the whole database again.
+ *
+ * The journal starts with the end of the authentication tag of the database file it belongs to
+ * (which differs for every write of the database), a journal left behind by an interrupted
+ * compaction is therefore ignored. Every
+ * change is encrypted on its own and stored with its length, a record that was only partially
+ * written (or that can't be decrypted or applied) is cut off when the journal is replayed.
+ */
+public class DatabaseJournal {
+    private static final byte[] MAGIC = { 'A', 'O', 'T', 'J' };
+    private static final int VERSION = 1;
+    private static final int HEADER_LENGTH = MAGIC.length + 1 + Constants.ENCRYPTION_IV_LENGTH;
+
+    private static final int MAX_RECORD_SIZE = 1 << 20;
+
+    public enum Operation {
+        ADD, UPDATE, REMOVE, SWAP
+    }
+
+    /**
+     * A single change to the list of entries. The entry is encoded when the change is created, so
+     * later modifications of the entry don't affect the change.
+     */
+    public static class Change {
+        private final byte[] data;
+
+        private Change(byte[] data) {
+            this.data = data;
+        }
+
+        /**
+         * Entry added at the end of the list
+         */
+        public static Change add(Entry entry) {
+            return encode(Operation.ADD, -1, -1, entry);
+        }
+
+        public static Change update(int position, Entry entry) {
+            return encode(Operation.UPDATE, position, -1, entry);
+        }
+
+        public static Change remove(int position) {
+            return encode(Operation.REMOVE, position, -1, null);
+        }
+
+        public static Change swap(int fromPosition, int toPosition) {
+            return encode(Operation.SWAP, fromPosition, toPosition, null);
+        }
+
+        private static Change encode(Operation operation, int position, int target, Entry entry) {
+            try {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                DataOutputStream out = new DataOutputStream(bytes);
+
+                BinaryHelper.writeVarInt(out, operation.ordinal());
+
+                if (position >= 0)
+                    BinaryHelper.writeVarInt(out, position);
+                if (target >= 0)
+                    BinaryHelper.writeVarInt(out, target);
+
+                if (entry != null) {
+                    HashMap<String, Integer> tagIndices = new HashMap<>();
+
+                    BinaryHelper.writeVarInt(out, entry.getTags().size());
+                    for (String tag : entry.getTags()) {
+                        tagIndices.put(tag, tagIndices.size());
+                        BinaryHelper.writeString(out, tag);
+                    }
+
+                    entry.writeBinary(out, tagIndices);
+                }
+
+                return new Change(bytes.toByteArray());
+            } catch (IOException error) {
+                // Writing to memory doesn't fail
+                throw new IllegalStateException(error);
+            }
+        }
+
+        private void apply(List<Entry> entries)
+                throws IOException {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+            Operation[] operations = Operation.values();
+
+            switch (operations[BinaryHelper.readLength(in, operations.length)]) {
+                case ADD:
+                    entries.add(readEntry(in));
+                    break;
+                case UPDATE:
+                    entries.set(BinaryHelper.readLength(in, entries.size()), readEntry(in));
+                    break;
+                case REMOVE:
+                    entries.remove(BinaryHelper.readLength(in, entries.size()));
+                    break;
+                case SWAP:
+                    Collections.swap(entries, BinaryHelper.readLength(in, entries.size()), BinaryHelper.readLength(in, entries.size()));
+                    break;
+            }
+        }
+
+        private Entry readEntry(DataInputStream in)
+                throws IOException {
+            int tagCount = BinaryHelper.readLength(in, data.length);
+
+            ArrayList<String> tagTable = new ArrayList<>(tagCount);
+            for (int i = 0; i < tagCount; i++)
+                tagTable.add(BinaryHelper.readString(in, data.length + 1));
+
+            return new Entry(in, data.length + 1, tagTable);
+        }
+    }
+
+    /**
+     * Appends changes to the journal, a new journal is started if there is none for the current
+     * database file yet.
+     *
+     * @param journal Journal file
+     * @param database Database file the changes are based on, has to exist
+     */
+    public static void append(File journal, File database, SecretKey encryptionKey, List<Change> changes)
+            throws GeneralSecurityException, IOException {
+        byte[] databaseId = readDatabaseId(database);
+        boolean continued = Arrays.equals(readJournalId(journal), databaseId);
+
+        int size = continued ? 0 : HEADER_LENGTH;
+        for (Change change : changes)
+            size += 4 + EncryptionHelper.getEncryptedSize(change.data.length);
+
+        // The records are encrypted right into the buffer that is written
+        ByteBuffer records = ByteBuffer.allocate(size);
+
+        if (!continued) {
+            records.put(MAGIC);
+            records.put((byte) VERSION);
+            records.put(databaseId);
+        }
+
+        for (Change change : changes) {
+            records.putInt(EncryptionHelper.getEncryptedSize(change.data.length));
+            EncryptionHelper.encrypt(encryptionKey, ByteBuffer.wrap(change.data), records);
+        }
+
+        // A single write, so an interruption leaves at most one partial record behind
+        try (FileOutputStream file = new FileOutputStream(journal, continued)) {
+            file.write(records.array(), 0, records.position());
+            file.getChannel().force(false);
+        }
+    }
+
+    /**
+     * Applies the changes of the journal to the entries read from the database file. A partially
+     * written record or one that can't be decrypted or applied ends the journal, it is cut off so
+     * later changes aren't appended behind it (where they would never be replayed).
+     *
+     * @param entries Entries of the database file, modified in place
+     * @return Number of changes that were applied
+     */
+    public static int replay(File journal, File database, SecretKey encryptionKey, List<Entry> entries)
+            throws IOException {
+        if (!journal.exists() || !Arrays.equals(readJournalId(journal), readDatabaseId(database)))
+            return 0;
+
+        int applied = 0;
+        long validLength = HEADER_LENGTH;
+        boolean truncated = false;
+
+        try (InputStream file = new BufferedInputStream(new FileInputStream(journal))) {
+            DataInputStream in = new DataInputStream(file);
+            in.readFully(new byte[HEADER_LENGTH]);
+
+            while (in.available() > 0) {
+                byte[] record;
+
+                try {
+                    int length = in.readInt();
+
+                    if (length <= 0 || length > MAX_RECORD_SIZE) {
+                        truncated = true;
+                        break;
+                    }
+
+                    record = new byte[length];
+                    in.readFully(record);
+                } catch (EOFException error) {
+                    truncated = true;
+                    break;
+                }
+
+                try {
+                    new Change(EncryptionHelper.decrypt(encryptionKey, record)).apply(entries);
+                } catch (GeneralSecurityException | IOException | RuntimeException error) {
+                    error.printStackTrace();
+                    truncated = true;
+                    break;
+                }
+
+                applied++;
+                validLength += 4 + record.length;
+            }
+        } catch (IOException error) {
+            error.printStackTrace();
+        }
+
+        if (truncated) {
+            try (RandomAccessFile file = new RandomAccessFile(journal, "rw")) {
+                file.setLength(validLength);
+            }
+        }
+
+        return applied;
+    }
+
+    private static byte[] readDatabaseId(File database)
+            throws IOException {
+        byte[] id = new byte[Constants.ENCRYPTION_IV_LENGTH];
+
+        try (RandomAccessFile file = new RandomAccessFile(database, "r")) {
+            if (file.length() < id.length)
+                throw new IOException("Database file is too short");
+
+            file.seek(file.length() - id.length);
+            file.readFully(id);
+        }
+
+        return id;
+    }
+
+    private static byte[] readJournalId(File journal) {
+        byte[] header = new byte[HEADER_LENGTH];
+
+        try (InputStream in = new FileInputStream(journal)) {
+            new DataInputStream(in).readFully(header);
+        } catch (FileNotFoundException | EOFException error) {
+            return null;
+        } catch (IOException error) {
+            error.printStackTrace();
+            return null;
+        }
+
+        if (!Arrays.equals(Arrays.copyOf(header, MAGIC.length), MAGIC) || header[MAGIC.length] != VERSION)
+            return null;
+
+        return Arrays.copyOfRange(header, MAGIC.length + 1, HEADER_LENGTH);
+    }
+}
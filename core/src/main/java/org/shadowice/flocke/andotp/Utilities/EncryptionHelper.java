@@ -0,0 +1,390 @@
+/*
+ * Copyright (C) 2017-2020 Jakob Nixdorf
+ * Copyright (C) 2015 Bruno Bierbaumer
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.shadowice.flocke.andotp.Utilities;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.security.spec.InvalidKeySpecException;
+import java.security.spec.KeySpec;
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.crypto.BadPaddingException;
+import javax.crypto.Cipher;
+import javax.crypto.CipherInputStream;
+import javax.crypto.CipherOutputStream;
+import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.NoSuchPaddingException;
+import javax.crypto.SecretKey;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+
+public class EncryptionHelper {
+    // Thread-safe, seeding it once is enough
+    private static final SecureRandom secureRandom = new SecureRandom();
+
+    public static class PBKDF2Credentials {
+        public byte[] password;
+        public byte[] key;
+    }
+
+    public static int benchmarkIterations(String password, byte[] salt) {
+        try {
+            SecretKeyFactory secretKeyFactory = SecretKeyFactory.getInstance(Constants.PBKDF2_ALGORITHM);
+            KeySpec keySpec = new PBEKeySpec(password.toCharArray(), salt, Constants.PBKDF2_BENCHMARK_ITERATIONS, Constants.PBKDF2_LENGTH);
+
+            long startTime = System.currentTimeMillis();
+            secretKeyFactory.generateSecret(keySpec);
+            long finishTime = System.currentTimeMillis();
+
+            long timeDiff = finishTime - startTime;
+            int scaledIterationTarget = (int) (((double) Constants.PBKDF2_BENCHMARK_ITERATIONS / (double) timeDiff) * Constants.PBKDF2_TARGET_AUTH_TIME);
+
+            return Math.max(scaledIterationTarget, Constants.PBKDF2_MIN_AUTH_ITERATIONS);
+        } catch (NoSuchAlgorithmException | InvalidKeySpecException e) {
+            e.printStackTrace();
+            return Constants.PBKDF2_MIN_AUTH_ITERATIONS;
+        }
+    }
+
+    public static int generateRandomIterations() {
+        Random rand = new Random();
+        return rand.nextInt((Constants.PBKDF2_MAX_BACKUP_ITERATIONS - Constants.PBKDF2_MIN_BACKUP_ITERATIONS) + 1) + Constants.PBKDF2_MIN_BACKUP_ITERATIONS;
+    }
+
+    public static byte[] generateRandom(int length) {
+        final byte[] raw = new byte[length];
+        secureRandom.nextBytes(raw);
+
+        return raw;
+    }
+
+    public static PBKDF2Credentials generatePBKDF2Credentials(String password, byte[] salt, int iter)
+        throws NoSuchAlgorithmException, InvalidKeySpecException {
+        SecretKeyFactory secretKeyFactory = SecretKeyFactory.getInstance(Constants.PBKDF2_ALGORITHM);
+        KeySpec keySpec = new PBEKeySpec(password.toCharArray(), salt, iter, Constants.PBKDF2_LENGTH);
+
+        byte[] array = secretKeyFactory.generateSecret(keySpec).getEncoded();
+
+        int halfPoint = array.length / 2;
+
+        PBKDF2Credentials credentials = new PBKDF2Credentials();
+        credentials.password = Arrays.copyOfRange(array, halfPoint, array.length);
+        credentials.key = Arrays.copyOfRange(array, 0, halfPoint);
+
+        return credentials;
+    }
+
+    public static SecretKey generateSymmetricKey(byte[] data) {
+        return new SecretKeySpec(data, 0, data.length, "AES");
+    }
+
+    public static SecretKey generateSymmetricKeyPBKDF2(String password, int iter, byte[] salt)
+        throws NoSuchAlgorithmException, InvalidKeySpecException {
+        SecretKeyFactory secretKeyFactory = SecretKeyFactory.getInstance(Constants.PBKDF2_ALGORITHM);
+        KeySpec keySpec = new PBEKeySpec(password.toCharArray(), salt, iter, Constants.PBKDF2_LENGTH);
+
+        return secretKeyFactory.generateSecret(keySpec);
+    }
+
+    public static SecretKey generateSymmetricKeyFromPassword(String password)
+            throws NoSuchAlgorithmException {
+        MessageDigest sha = MessageDigest.getInstance("SHA-256");
+
+        return new SecretKeySpec(sha.digest(password.getBytes(StandardCharsets.UTF_8)), "AES");
+    }
+
+    public static byte[] encrypt(SecretKey secretKey, IvParameterSpec iv, byte[] plainText)
+            throws NoSuchPaddingException, NoSuchAlgorithmException, InvalidAlgorithmParameterException, InvalidKeyException, BadPaddingException, IllegalBlockSizeException {
+        Cipher cipher = CipherPool.obtain(Constants.ALGORITHM_SYMMETRIC, secretKey);
+
+        try {
+            cipher.init(Cipher.ENCRYPT_MODE, secretKey, new GCMParameterSpec(Constants.ENCRYPTION_TAG_LENGTH, iv.getIV()));
+
+            return cipher.doFinal(plainText);
+        } finally {
+            CipherPool.release(Constants.ALGORITHM_SYMMETRIC, secretKey, cipher);
+        }
+    }
+
+    /**
+     * @return Size of the output of {@link #encrypt(SecretKey, byte[])} (IV, ciphertext and tag)
+     */
+    public static int getEncryptedSize(int plaintextLength) {
+        return Constants.ENCRYPTION_IV_LENGTH + plaintextLength + Constants.ENCRYPTION_TAG_LENGTH / 8;
+    }
+
+    public static byte[] encrypt(SecretKey secretKey, byte[] plaintext)
+            throws NoSuchPaddingException, BadPaddingException, InvalidKeyException, NoSuchAlgorithmException, IllegalBlockSizeException, InvalidAlgorithmParameterException {
+        return encrypt(secretKey, plaintext, 0, plaintext.length);
+    }
+
+    /**
+     * Encrypts a part of the array, the IV and the ciphertext are written to a single new array
+     * without intermediate copies of the data.
+     *
+     * @return IV followed by the ciphertext
+     */
+    public static byte[] encrypt(SecretKey secretKey, byte[] plaintext, int offset, int length)
+            throws NoSuchPaddingException, BadPaddingException, InvalidKeyException, NoSuchAlgorithmException, IllegalBlockSizeException, InvalidAlgorithmParameterException {
+        byte[] combined = new byte[getEncryptedSize(length)];
+
+        try {
+            encrypt(secretKey, ByteBuffer.wrap(plaintext, offset, length), ByteBuffer.wrap(combined));
+        } catch (ShortBufferException error) {
+            // The output is allocated with the right size
+            throw new IllegalStateException(error);
+        }
+
+        return combined;
+    }
+
+    /**
+     * Encrypts the remaining bytes of plaintext and writes the IV and the ciphertext to out, which
+     * needs room for {@link #getEncryptedSize(int)} bytes.
+     */
+    public static void encrypt(SecretKey secretKey, ByteBuffer plaintext, ByteBuffer out)
+            throws NoSuchPaddingException, BadPaddingException, InvalidKeyException, NoSuchAlgorithmException, IllegalBlockSizeException, InvalidAlgorithmParameterException, ShortBufferException {
+        if (out.remaining() < getEncryptedSize(plaintext.remaining()))
+            throw new ShortBufferException();
+
+        final byte[] iv = generateRandom(Constants.ENCRYPTION_IV_LENGTH);
+        out.put(iv);
+
+        Cipher cipher = CipherPool.obtain(Constants.ALGORITHM_SYMMETRIC, secretKey);
+
+        try {
+            cipher.init(Cipher.ENCRYPT_MODE, secretKey, new GCMParameterSpec(Constants.ENCRYPTION_TAG_LENGTH, iv));
+            cipher.doFinal(plaintext, out);
+        } finally {
+            CipherPool.release(Constants.ALGORITHM_SYMMETRIC, secretKey, cipher);
+        }
+    }
+
+    /**
+     * Streaming variant of {@link #encrypt(SecretKey, byte[])} with the same output format, the IV
+     * is written to the stream right away and the ciphertext follows as data is written to the
+     * returned stream. Closing the returned stream finishes the encryption and closes out.
+     */
+    public static OutputStream encrypt(SecretKey secretKey, OutputStream out)
+            throws NoSuchPaddingException, NoSuchAlgorithmException, InvalidAlgorithmParameterException, InvalidKeyException, IOException {
+        final byte[] iv = generateRandom(Constants.ENCRYPTION_IV_LENGTH);
+
+        Cipher cipher = CipherPool.obtain(Constants.ALGORITHM_SYMMETRIC, secretKey);
+
+        try {
+            cipher.init(Cipher.ENCRYPT_MODE, secretKey, new GCMParameterSpec(Constants.ENCRYPTION_TAG_LENGTH, iv));
+
+            out.write(iv);
+        } catch (InvalidKeyException | InvalidAlgorithmParameterException | IOException | RuntimeException error) {
+            CipherPool.release(Constants.ALGORITHM_SYMMETRIC, secretKey, cipher);
+            throw error;
+        }
+
+        return new PooledCipherOutputStream(out, cipher, secretKey);
+    }
+
+    public static byte[] encrypt(PublicKey publicKey, byte[] plaintext)
+            throws NoSuchPaddingException, BadPaddingException, InvalidKeyException, NoSuchAlgorithmException, IllegalBlockSizeException {
+        Cipher cipher = CipherPool.obtain(Constants.ALGORITHM_ASYMMETRIC, publicKey);
+
+        try {
+            cipher.init(Cipher.ENCRYPT_MODE, publicKey);
+
+            return cipher.doFinal(plaintext);
+        } finally {
+            CipherPool.release(Constants.ALGORITHM_ASYMMETRIC, publicKey, cipher);
+        }
+    }
+
+    public static byte[] decrypt(SecretKey secretKey, IvParameterSpec iv, byte[] cipherText)
+            throws NoSuchPaddingException, InvalidKeyException, NoSuchAlgorithmException, IllegalBlockSizeException, BadPaddingException, InvalidAlgorithmParameterException {
+        Cipher cipher = CipherPool.obtain(Constants.ALGORITHM_SYMMETRIC, secretKey);
+
+        try {
+            cipher.init(Cipher.DECRYPT_MODE, secretKey, new GCMParameterSpec(Constants.ENCRYPTION_TAG_LENGTH, iv.getIV()));
+
+            return cipher.doFinal(cipherText);
+        } finally {
+            CipherPool.release(Constants.ALGORITHM_SYMMETRIC, secretKey, cipher);
+        }
+    }
+
+    public static byte[] decrypt(SecretKey secretKey, byte[] cipherText)
+            throws NoSuchPaddingException, InvalidKeyException, NoSuchAlgorithmException, IllegalBlockSizeException, BadPaddingException, InvalidAlgorithmParameterException {
+        return decrypt(secretKey, cipherText, 0, cipherText.length);
+    }
+
+    /**
+     * Decrypts a part of the array (IV followed by the ciphertext) without copying the IV or the
+     * ciphertext first.
+     */
+    public static byte[] decrypt(SecretKey secretKey, byte[] cipherText, int offset, int length)
+            throws NoSuchPaddingException, InvalidKeyException, NoSuchAlgorithmException, IllegalBlockSizeException, BadPaddingException, InvalidAlgorithmParameterException {
+        if (length < Constants.ENCRYPTION_IV_LENGTH)
+            throw new IllegalBlockSizeException("Encrypted data is too short");
+
+        Cipher cipher = CipherPool.obtain(Constants.ALGORITHM_SYMMETRIC, secretKey);
+
+        try {
+            cipher.init(Cipher.DECRYPT_MODE, secretKey, new GCMParameterSpec(Constants.ENCRYPTION_TAG_LENGTH, cipherText, offset, Constants.ENCRYPTION_IV_LENGTH));
+
+            return cipher.doFinal(cipherText, offset + Constants.ENCRYPTION_IV_LENGTH, length - Constants.ENCRYPTION_IV_LENGTH);
+        } finally {
+            CipherPool.release(Constants.ALGORITHM_SYMMETRIC, secretKey, cipher);
+        }
+    }
+
+    /**
+     * Decrypts the remaining bytes of in (IV followed by the ciphertext) into out, which needs room
+     * for the remaining bytes minus the IV and the tag.
+     */
+    public static void decrypt(SecretKey secretKey, ByteBuffer in, ByteBuffer out)
+            throws NoSuchPaddingException, InvalidKeyException, NoSuchAlgorithmException, IllegalBlockSizeException, BadPaddingException, InvalidAlgorithmParameterException, ShortBufferException {
+        if (in.remaining() < Constants.ENCRYPTION_IV_LENGTH)
+            throw new IllegalBlockSizeException("Encrypted data is too short");
+
+        final byte[] iv = new byte[Constants.ENCRYPTION_IV_LENGTH];
+        in.get(iv);
+
+        Cipher cipher = CipherPool.obtain(Constants.ALGORITHM_SYMMETRIC, secretKey);
+
+        try {
+            cipher.init(Cipher.DECRYPT_MODE, secretKey, new GCMParameterSpec(Constants.ENCRYPTION_TAG_LENGTH, iv));
+            cipher.doFinal(in, out);
+        } finally {
+            CipherPool.release(Constants.ALGORITHM_SYMMETRIC, secretKey, cipher);
+        }
+    }
+
+    /**
+     * Streaming variant of {@link #decrypt(SecretKey, byte[])}, reads the IV from the stream and
+     * decrypts the rest of it. A failed authentication is reported as an IOException at the end.
+     */
+    public static InputStream decrypt(SecretKey secretKey, InputStream in)
+            throws NoSuchPaddingException, NoSuchAlgorithmException, InvalidAlgorithmParameterException, InvalidKeyException, IOException {
+        final byte[] iv = new byte[Constants.ENCRYPTION_IV_LENGTH];
+
+        int offset = 0;
+        while (offset < iv.length) {
+            int count = in.read(iv, offset, iv.length - offset);
+
+            if (count < 0)
+                throw new IOException("Encrypted data is too short");
+
+            offset += count;
+        }
+
+        Cipher cipher = CipherPool.obtain(Constants.ALGORITHM_SYMMETRIC, secretKey);
+
+        try {
+            cipher.init(Cipher.DECRYPT_MODE, secretKey, new GCMParameterSpec(Constants.ENCRYPTION_TAG_LENGTH, iv));
+        } catch (InvalidKeyException | InvalidAlgorithmParameterException | RuntimeException error) {
+            CipherPool.release(Constants.ALGORITHM_SYMMETRIC, secretKey, cipher);
+            throw error;
+        }
+
+        return new PooledCipherInputStream(in, cipher, secretKey);
+    }
+
+    // Cipher streams that return their pooled cipher when they are closed (only once)
+    private static class PooledCipherOutputStream extends CipherOutputStream {
+        private final Cipher cipher;
+        private final SecretKey secretKey;
+        private boolean closed = false;
+
+        PooledCipherOutputStream(OutputStream out, Cipher cipher, SecretKey secretKey) {
+            super(out, cipher);
+            this.cipher = cipher;
+            this.secretKey = secretKey;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed)
+                return;
+
+            closed = true;
+
+            try {
+                super.close();
+            } finally {
+                CipherPool.release(Constants.ALGORITHM_SYMMETRIC, secretKey, cipher);
+            }
+        }
+    }
+
+    private static class PooledCipherInputStream extends CipherInputStream {
+        private final Cipher cipher;
+        private final SecretKey secretKey;
+        private boolean closed = false;
+
+        PooledCipherInputStream(InputStream in, Cipher cipher, SecretKey secretKey) {
+            super(in, cipher);
+            this.cipher = cipher;
+            this.secretKey = secretKey;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed)
+                return;
+
+            closed = true;
+
+            try {
+                super.close();
+            } finally {
+                CipherPool.release(Constants.ALGORITHM_SYMMETRIC, secretKey, cipher);
+            }
+        }
+    }
+
+    public static byte[] decrypt(PrivateKey privateKey, byte[] cipherText)
+            throws NoSuchPaddingException, InvalidKeyException, NoSuchAlgorithmException, IllegalBlockSizeException, BadPaddingException {
+        Cipher cipher = CipherPool.obtain(Constants.ALGORITHM_ASYMMETRIC, privateKey);
+
+        try {
+            cipher.init(Cipher.DECRYPT_MODE, privateKey);
+
+            return cipher.doFinal(cipherText);
+        } finally {
+            CipherPool.release(Constants.ALGORITHM_ASYMMETRIC, privateKey, cipher);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2017-2020 Jakob Nixdorf
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.shadowice.flocke.andotp.Utilities;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+
+public class FileHelper {
+    public static byte[] readFileToBytes(File file) throws IOException {
+        final InputStream in = new FileInputStream(file);
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                bytes.write(buffer, 0, count);
+            }
+            return bytes.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    public static void writeBytesToFile(File file, byte[] data) throws IOException {
+        try {
+            try (OutputStream out = startAtomicWrite(file)) {
+                out.write(data);
+            }
+
+            finishAtomicWrite(file);
+        } finally {
+            failAtomicWrite(file);
+        }
+    }
+
+    /**
+     * Copies a file through the file channels, the destination is replaced atomically.
+     */
+    public static void copyFile(File src, File dst) throws IOException {
+        try {
+            try (FileInputStream in = new FileInputStream(src);
+                 FileOutputStream out = new FileOutputStream(getTemporaryFile(dst))) {
+                FileChannel source = in.getChannel();
+                FileChannel target = out.getChannel();
+
+                long size = source.size();
+                long position = 0;
+
+                while (position < size)
+                    position += source.transferTo(position, size - position, target);
+
+                target.force(true);
+            }
+
+            finishAtomicWrite(dst);
+        } finally {
+            failAtomicWrite(dst);
+        }
+    }
+
+    /* Atomic writes: the data is written to a temporary file next to the target, which is synced
+     * to disk and then renamed over the target. An interrupted write leaves the old file intact. */
+
+    /**
+     * @return Stream to the temporary file, it is synced to disk when the stream is closed (closing
+     *         it again does nothing)
+     */
+    public static OutputStream startAtomicWrite(File file) throws IOException {
+        return new FilterOutputStream(new FileOutputStream(getTemporaryFile(file))) {
+            private boolean closed = false;
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (closed)
+                    return;
+
+                closed = true;
+
+                try {
+                    out.flush();
+                    ((FileOutputStream) out).getChannel().force(true);
+                } finally {
+                    out.close();
+                }
+            }
+        };
+    }
+
+    /**
+     * Replaces the file with the temporary file, the stream has to be closed already.
+     */
+    public static void finishAtomicWrite(File file) throws IOException {
+        if (!getTemporaryFile(file).renameTo(file))
+            throw new IOException("Failed to replace " + file);
+    }
+
+    /**
+     * Removes the temporary file (if there is one left).
+     */
+    public static void failAtomicWrite(File file) {
+        getTemporaryFile(file).delete();
+    }
+
+    private static File getTemporaryFile(File file) {
+        return new File(file.getPath() + ".tmp");
+    }
+}
+
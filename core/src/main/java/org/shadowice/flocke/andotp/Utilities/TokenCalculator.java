@@ -0,0 +1,277 @@
+/*
+ * Copyright (C) 2017-2020 Jakob Nixdorf
+ * Copyright (C) 2015 Bruno Bierbaumer
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.shadowice.flocke.andotp.Utilities;
+
+import org.apache.commons.codec.binary.Hex;
+import org.shadowice.flocke.andotp.Database.Entry;
+
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+public class TokenCalculator {
+    public static final int TOTP_DEFAULT_PERIOD = 30;
+    public static final int TOTP_DEFAULT_DIGITS = 6;
+    public static final int HOTP_INITIAL_COUNTER = 1;
+    public static final int STEAM_DEFAULT_DIGITS = 5;
+
+    private static final char[] STEAMCHARS = new char[] {
+            '2', '3', '4', '5', '6', '7', '8', '9', 'B', 'C',
+            'D', 'F', 'G', 'H', 'J', 'K', 'M', 'N', 'P', 'Q',
+            'R', 'T', 'V', 'W', 'X', 'Y'
+    };
+
+    private static final int[] POWERS_OF_TEN = new int[] {
+            1, 10, 100, 1000, 10000, 100000, 1000000, 10000000, 100000000, 1000000000
+    };
+
+    private static final int COUNTER_LENGTH = 8;
+    private static final int MAX_HASH_LENGTH = 64;
+
+    public enum HashAlgorithm {
+        SHA1, SHA256, SHA512
+    }
+
+    public static final HashAlgorithm DEFAULT_ALGORITHM = HashAlgorithm.SHA1;
+
+    /**
+     * Scratch space for the allocation free token functions. The counter, the HMAC output and the
+     * formatted digits are all written into the same arrays on every call, so a buffer must only
+     * be used by one thread at a time.
+     */
+    public static class TokenBuffer {
+        private final byte[] data = new byte[COUNTER_LENGTH + MAX_HASH_LENGTH];
+        private char[] chars = new char[TOTP_DEFAULT_DIGITS];
+
+        private char[] getChars(int length) {
+            if (chars.length < length)
+                chars = new char[length];
+
+            return chars;
+        }
+    }
+
+    /**
+     * Create an initialized {@link Mac} for the given algorithm and key. The returned instance can
+     * be kept around and passed to the token functions, {@link Mac#doFinal(byte[])} resets it after
+     * every calculation so only the HMAC itself has to be computed for each token.
+     */
+    public static Mac getMac(HashAlgorithm algorithm, byte[] key)
+            throws NoSuchAlgorithmException, InvalidKeyException {
+        String algo = "Hmac" + algorithm.toString();
+
+        Mac mac = Mac.getInstance(algo);
+        mac.init(new SecretKeySpec(key, algo));
+
+        return mac;
+    }
+
+    // TODO: Rewrite tests so this compatibility wrapper can be removed
+    public static int TOTP_RFC6238(byte[] secret, int period, long time, int digits, HashAlgorithm algorithm) {
+        return TOTP_RFC6238(secret, period, time, digits, algorithm, 0);
+    }
+
+    public static int TOTP_RFC6238(byte[] secret, int period, long time, int digits, HashAlgorithm algorithm, int offset) {
+        return TOTP_RFC6238(createMac(algorithm, secret), period, time, digits, offset);
+    }
+
+    public static int TOTP_RFC6238(Mac mac, int period, long time, int digits, int offset) {
+        return TOTP_RFC6238(mac, period, time, digits, offset, new TokenBuffer());
+    }
+
+    public static int TOTP_RFC6238(Mac mac, int period, long time, int digits, int offset, TokenBuffer buffer) {
+        return truncate(TOTP(mac, period, time, offset, buffer), digits);
+    }
+
+    public static String TOTP_RFC6238(byte[] secret, int period, int digits, HashAlgorithm algorithm, int offset) {
+        return TOTP_RFC6238(createMac(algorithm, secret), period, digits, offset);
+    }
+
+    public static String TOTP_RFC6238(Mac mac, int period, int digits, int offset) {
+        TokenBuffer buffer = new TokenBuffer();
+        return formatToken(TOTP_RFC6238(mac, period, System.currentTimeMillis() / 1000, digits, offset, buffer), digits, buffer);
+    }
+
+    public static String TOTP_Steam(byte[] secret, int period, int digits, HashAlgorithm algorithm, int offset) {
+        return TOTP_Steam(createMac(algorithm, secret), period, digits, offset);
+    }
+
+    public static String TOTP_Steam(Mac mac, int period, int digits, int offset) {
+        return TOTP_Steam(mac, period, System.currentTimeMillis() / 1000, digits, offset, new TokenBuffer());
+    }
+
+    public static String TOTP_Steam(Mac mac, int period, long time, int digits, int offset, TokenBuffer buffer) {
+        int fullToken = TOTP(mac, period, time, offset, buffer);
+        char[] chars = buffer.getChars(digits);
+
+        for (int i = 0; i < digits; i++) {
+            chars[i] = STEAMCHARS[fullToken % STEAMCHARS.length];
+            fullToken /= STEAMCHARS.length;
+        }
+
+        return new String(chars, 0, digits);
+    }
+
+    public static String HOTP(byte[] secret, long counter, int digits, HashAlgorithm algorithm) {
+        return HOTP(createMac(algorithm, secret), counter, digits);
+    }
+
+    public static String HOTP(Mac mac, long counter, int digits) {
+        TokenBuffer buffer = new TokenBuffer();
+        return formatToken(HOTP(mac, counter, digits, buffer), digits, buffer);
+    }
+
+    public static int HOTP(Mac mac, long counter, int digits, TokenBuffer buffer) {
+        return truncate(HOTP(mac, counter, buffer), digits);
+    }
+
+    /**
+     * Format a numeric token with leading zeros, the digits are written into the char array of the
+     * buffer so the returned String is the only allocation.
+     */
+    public static String formatToken(int token, int digits, TokenBuffer buffer) {
+        char[] chars = buffer.getChars(digits);
+
+        for (int i = digits - 1; i >= 0; i--) {
+            chars[i] = (char) ('0' + token % 10);
+            token /= 10;
+        }
+
+        return new String(chars, 0, digits);
+    }
+
+    private static int truncate(int fullToken, int digits) {
+        // Ten or more digits can't be truncated any further with 31 bits of token
+        if (digits >= POWERS_OF_TEN.length)
+            return fullToken;
+
+        return fullToken % POWERS_OF_TEN[digits];
+    }
+
+    private static Mac createMac(HashAlgorithm algorithm, byte[] key) {
+        try {
+            return getMac(algorithm, key);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private static int TOTP(Mac mac, int period, long time, int offset, TokenBuffer buffer) {
+        return HOTP(mac, (time / period) + offset, buffer);
+    }
+
+    private static int HOTP(Mac mac, long counter, TokenBuffer buffer)
+    {
+        int r = 0;
+
+        try {
+            byte[] data = buffer.data;
+
+            for (int i = COUNTER_LENGTH - 1; i >= 0; i--) {
+                data[i] = (byte) counter;
+                counter >>>= 8;
+            }
+
+            mac.update(data, 0, COUNTER_LENGTH);
+            mac.doFinal(data, COUNTER_LENGTH);
+
+            int hashEnd = COUNTER_LENGTH + mac.getMacLength();
+            int offset = COUNTER_LENGTH + (data[hashEnd - 1] & 0xF);
+
+            int binary = (data[offset] & 0x7F) << 0x18;
+            binary |= (data[offset + 1] & 0xFF) << 0x10;
+            binary |= (data[offset + 2] & 0xFF) << 0x08;
+            binary |= (data[offset + 3] & 0xFF);
+
+            r = binary;
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+
+        return r;
+    }
+
+    public static String MOTP(String PIN, String secret, long epoch, int offset)
+    {
+        String epochText = String.valueOf((epoch / 10) + offset);
+        String hashText = epochText + secret + PIN;
+        String otp = "";
+
+        try {
+            // Create MD5 Hash
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            digest.update(hashText.getBytes());
+            byte[] messageDigest = digest.digest();
+
+            // Create Hex String
+            String hexString = new String(Hex.encodeHex(messageDigest));
+            otp = hexString.substring(0, 6);
+        } catch (NoSuchAlgorithmException e) {
+            e.printStackTrace();
+        }
+
+        return otp;
+    }
+
+    /**
+     * Updates the tokens of all time based entries for a single point in time. The current window
+     * is only calculated once per period and entries which are still in their window are skipped
+     * without touching their token.
+     *
+     * @param entries List of entries to update
+     * @param epochSeconds Time to calculate the tokens for (in seconds since the epoch)
+     * @return Positions (in ascending order) of the entries whose token changed
+     */
+    public static ArrayList<Integer> computeAll(List<Entry> entries, long epochSeconds) {
+        ArrayList<Integer> changed = new ArrayList<>();
+        HashMap<Integer, Long> windows = new HashMap<>();
+
+        for (int i = 0; i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+
+            if (!entry.isTimeBased())
+                continue;
+
+            int period = entry.getPeriod();
+
+            Long window = windows.get(period);
+            if (window == null) {
+                window = epochSeconds / period;
+                windows.put(period, window);
+            }
+
+            if (entry.getLastUpdate() < window && entry.updateOTP(true, epochSeconds))
+                changed.add(i);
+        }
+
+        return changed;
+    }
+}
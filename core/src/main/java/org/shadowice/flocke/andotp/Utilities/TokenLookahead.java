@@ -0,0 +1,76 @@
+package org.shadowice.flocke.andotp.Utilities;
+
+import org.shadowice.flocke.andotp.Database.Entry;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Calculates the tokens of the next window on a background thread shortly before the current one
+ * runs out. The entries keep the result until the window starts, so the rollover itself is only a
+ * swap and doesn't need any HMAC calculations on the calling (UI) thread.
+ */
+public class TokenLookahead {
+    public static final int LOOKAHEAD_SECONDS = 3;
+
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "TokenLookahead");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    // Next window that was already scheduled for each period
+    private final HashMap<Integer, Long> scheduledWindows = new HashMap<>();
+
+    /**
+     * Schedules the calculation of the next window for all entries whose window ends within the
+     * next LOOKAHEAD_SECONDS. Needs to be called regularly and always from the same thread.
+     *
+     * @param entries Entries that should be prepared
+     * @param epochSeconds Current time (in seconds since the epoch)
+     */
+    public void schedule(List<Entry> entries, long epochSeconds) {
+        HashMap<Integer, ArrayList<Entry>> due = new HashMap<>();
+
+        for (Entry entry : entries) {
+            if (!entry.supportsLookahead())
+                continue;
+
+            int period = entry.getPeriod();
+
+            if (period <= 0 || period - (epochSeconds % period) > LOOKAHEAD_SECONDS)
+                continue;
+
+            ArrayList<Entry> periodEntries = due.get(period);
+
+            if (periodEntries == null) {
+                Long scheduled = scheduledWindows.get(period);
+
+                if (scheduled != null && scheduled == epochSeconds / period + 1)
+                    continue;
+
+                periodEntries = new ArrayList<>();
+                due.put(period, periodEntries);
+            }
+
+            periodEntries.add(entry);
+        }
+
+        for (Map.Entry<Integer, ArrayList<Entry>> periodEntries : due.entrySet()) {
+            final long window = epochSeconds / periodEntries.getKey() + 1;
+            final ArrayList<Entry> snapshot = periodEntries.getValue();
+
+            scheduledWindows.put(periodEntries.getKey(), window);
+
+            executor.execute(() -> {
+                for (Entry entry : snapshot)
+                    entry.precomputeOTP(window);
+            });
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package org.shadowice.flocke.andotp.Utilities;
+
+import org.shadowice.flocke.andotp.Database.Entry;
+
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Determines when a list of entries needs to be updated next, so the tokens don't have to be
+ * polled every second but only at the instants where something actually changes.
+ */
+public class TokenScheduler {
+    /**
+     * @param entries Entries to check
+     * @param epochSeconds Current time (in seconds since the epoch)
+     * @param highlightExpiry Also wake up when entries start being highlighted as expiring
+     * @return Time of the next update (in seconds since the epoch) or Long.MAX_VALUE if none of the entries is time based
+     */
+    public static long getNextUpdate(List<Entry> entries, long epochSeconds, boolean highlightExpiry) {
+        long next = Long.MAX_VALUE;
+
+        // The result only depends on the period and type, so most entries can be skipped
+        HashMap<Integer, Boolean> checked = new HashMap<>();
+
+        for (Entry entry : entries) {
+            if (!entry.isTimeBased())
+                continue;
+
+            Boolean lookahead = checked.get(entry.getPeriod());
+            if (lookahead != null && (lookahead || !entry.supportsLookahead()))
+                continue;
+
+            checked.put(entry.getPeriod(), entry.supportsLookahead());
+            next = Math.min(next, entry.getNextUpdate(epochSeconds, highlightExpiry));
+        }
+
+        return next;
+    }
+
+    /**
+     * @param epochSeconds Current time (in seconds since the epoch)
+     * @param period Length of the window in seconds
+     * @return Start of the next window (in seconds since the epoch)
+     */
+    public static long getNextWindow(long epochSeconds, int period) {
+        return (epochSeconds / period + 1) * period;
+    }
+}
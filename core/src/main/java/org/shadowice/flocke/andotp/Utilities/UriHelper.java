@@ -0,0 +1,100 @@
+package org.shadowice.flocke.andotp.Utilities;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal URI encoding and query parsing for otpauth:// URIs, follows the rules of android.net.Uri
+ * so entries can be imported and exported without the Android framework.
+ */
+public class UriHelper {
+    private static final String ALLOWED_CHARACTERS = "_-!.~'()*";
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    public static String encode(String value) {
+        StringBuilder builder = new StringBuilder(value.length());
+
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            char c = (char) (b & 0xff);
+
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || ALLOWED_CHARACTERS.indexOf(c) >= 0) {
+                builder.append(c);
+            } else {
+                builder.append('%')
+                        .append(HEX_DIGITS[(c >> 4) & 0x0f])
+                        .append(HEX_DIGITS[c & 0x0f]);
+            }
+        }
+
+        return builder.toString();
+    }
+
+    public static String decode(String value, boolean convertPlus) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(value.length());
+
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+
+            if (c == '%' && i + 2 < value.length() && Character.digit(value.charAt(i + 1), 16) >= 0 && Character.digit(value.charAt(i + 2), 16) >= 0) {
+                bytes.write((Character.digit(value.charAt(i + 1), 16) << 4) | Character.digit(value.charAt(i + 2), 16));
+                i += 2;
+            } else if (c == '+' && convertPlus) {
+                bytes.write(' ');
+            } else {
+                int codePoint = value.codePointAt(i);
+                byte[] encoded = new String(Character.toChars(codePoint)).getBytes(StandardCharsets.UTF_8);
+                bytes.write(encoded, 0, encoded.length);
+                i += Character.charCount(codePoint) - 1;
+            }
+        }
+
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    public static Map<String, List<String>> parseQuery(String query) {
+        Map<String, List<String>> parameters = new LinkedHashMap<>();
+
+        if (query == null || query.isEmpty())
+            return parameters;
+
+        for (String parameter : query.split("&")) {
+            if (parameter.isEmpty())
+                continue;
+
+            int separator = parameter.indexOf('=');
+
+            String key = decode(separator >= 0 ? parameter.substring(0, separator) : parameter, true);
+            String value = separator >= 0 ? decode(parameter.substring(separator + 1), true) : "";
+
+            List<String> values = parameters.get(key);
+            if (values == null) {
+                values = new ArrayList<>();
+                parameters.put(key, values);
+            }
+
+            values.add(value);
+        }
+
+        return parameters;
+    }
+
+    public static String getQueryParameter(Map<String, List<String>> parameters, String key) {
+        List<String> values = parameters.get(key);
+
+        if (values != null && !values.isEmpty())
+            return values.get(0);
+        else
+            return null;
+    }
+
+    public static void appendQueryParameter(StringBuilder builder, String key, String value) {
+        builder.append(builder.indexOf("?") < 0 ? '?' : '&')
+                .append(encode(key))
+                .append('=')
+                .append(encode(value));
+    }
+}
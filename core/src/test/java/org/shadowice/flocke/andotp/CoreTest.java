@@ -0,0 +1,811 @@
+/*
+ * Copyright (C) 2017-2020 Jakob Nixdorf
+ * Copyright (C) 2015 Bruno Bierbaumer
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.shadowice.flocke.andotp;
+
+import org.apache.commons.codec.DecoderException;
+import org.apache.commons.codec.binary.Base32;
+import org.apache.commons.codec.binary.Hex;
+import org.json.JSONObject;
+import org.junit.Test;
+import org.shadowice.flocke.andotp.Database.Entry;
+import org.shadowice.flocke.andotp.Database.EntryList;
+import org.shadowice.flocke.andotp.Utilities.ChunkedEncryptionHelper;
+import org.shadowice.flocke.andotp.Utilities.Constants;
+import org.shadowice.flocke.andotp.Utilities.DatabaseFileHelper;
+import org.shadowice.flocke.andotp.Utilities.DatabaseJournal;
+import org.shadowice.flocke.andotp.Utilities.EncryptionHelper;
+import org.shadowice.flocke.andotp.Utilities.FileHelper;
+import org.shadowice.flocke.andotp.Utilities.TokenCalculator;
+import org.shadowice.flocke.andotp.Utilities.TokenScheduler;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import javax.crypto.BadPaddingException;
+import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.Mac;
+import javax.crypto.NoSuchPaddingException;
+import javax.crypto.SecretKey;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CoreTest {
+
+    @Test
+    public void testTOTPCalculation(){
+        // Test Vectors from https://tools.ietf.org/html/rfc6238
+        byte[] keySHA1 =  "12345678901234567890".getBytes(StandardCharsets.US_ASCII);
+        byte[] keySHA256 =  "12345678901234567890123456789012".getBytes(StandardCharsets.US_ASCII);
+        byte[] keySHA512 =  "1234567890123456789012345678901234567890123456789012345678901234".getBytes(StandardCharsets.US_ASCII);
+
+        assertEquals(94287082, TokenCalculator.TOTP_RFC6238(keySHA1,   TokenCalculator.TOTP_DEFAULT_PERIOD, 59L, 8, TokenCalculator.HashAlgorithm.SHA1));
+        assertEquals(46119246, TokenCalculator.TOTP_RFC6238(keySHA256, TokenCalculator.TOTP_DEFAULT_PERIOD, 59L, 8, TokenCalculator.HashAlgorithm.SHA256));
+        assertEquals(90693936, TokenCalculator.TOTP_RFC6238(keySHA512, TokenCalculator.TOTP_DEFAULT_PERIOD, 59L, 8, TokenCalculator.HashAlgorithm.SHA512));
+
+        assertEquals(7081804,  TokenCalculator.TOTP_RFC6238(keySHA1,   TokenCalculator.TOTP_DEFAULT_PERIOD, 1111111109L, 8, TokenCalculator.HashAlgorithm.SHA1));
+        assertEquals(68084774, TokenCalculator.TOTP_RFC6238(keySHA256, TokenCalculator.TOTP_DEFAULT_PERIOD, 1111111109L, 8, TokenCalculator.HashAlgorithm.SHA256));
+        assertEquals(25091201, TokenCalculator.TOTP_RFC6238(keySHA512, TokenCalculator.TOTP_DEFAULT_PERIOD, 1111111109L, 8, TokenCalculator.HashAlgorithm.SHA512));
+
+        assertEquals(14050471, TokenCalculator.TOTP_RFC6238(keySHA1,   TokenCalculator.TOTP_DEFAULT_PERIOD, 1111111111L, 8, TokenCalculator.HashAlgorithm.SHA1));
+        assertEquals(67062674, TokenCalculator.TOTP_RFC6238(keySHA256, TokenCalculator.TOTP_DEFAULT_PERIOD, 1111111111L, 8, TokenCalculator.HashAlgorithm.SHA256));
+        assertEquals(99943326, TokenCalculator.TOTP_RFC6238(keySHA512, TokenCalculator.TOTP_DEFAULT_PERIOD, 1111111111L, 8, TokenCalculator.HashAlgorithm.SHA512));
+
+        assertEquals(89005924, TokenCalculator.TOTP_RFC6238(keySHA1,   TokenCalculator.TOTP_DEFAULT_PERIOD, 1234567890L, 8, TokenCalculator.HashAlgorithm.SHA1));
+        assertEquals(91819424, TokenCalculator.TOTP_RFC6238(keySHA256, TokenCalculator.TOTP_DEFAULT_PERIOD, 1234567890L, 8, TokenCalculator.HashAlgorithm.SHA256));
+        assertEquals(93441116, TokenCalculator.TOTP_RFC6238(keySHA512, TokenCalculator.TOTP_DEFAULT_PERIOD, 1234567890L, 8, TokenCalculator.HashAlgorithm.SHA512));
+
+        assertEquals(69279037, TokenCalculator.TOTP_RFC6238(keySHA1,   TokenCalculator.TOTP_DEFAULT_PERIOD, 2000000000L, 8, TokenCalculator.HashAlgorithm.SHA1));
+        assertEquals(90698825, TokenCalculator.TOTP_RFC6238(keySHA256, TokenCalculator.TOTP_DEFAULT_PERIOD, 2000000000L, 8, TokenCalculator.HashAlgorithm.SHA256));
+        assertEquals(38618901, TokenCalculator.TOTP_RFC6238(keySHA512, TokenCalculator.TOTP_DEFAULT_PERIOD, 2000000000L, 8, TokenCalculator.HashAlgorithm.SHA512));
+
+        assertEquals(65353130, TokenCalculator.TOTP_RFC6238(keySHA1,   TokenCalculator.TOTP_DEFAULT_PERIOD, 20000000000L, 8, TokenCalculator.HashAlgorithm.SHA1));
+        assertEquals(77737706, TokenCalculator.TOTP_RFC6238(keySHA256, TokenCalculator.TOTP_DEFAULT_PERIOD, 20000000000L, 8, TokenCalculator.HashAlgorithm.SHA256));
+        assertEquals(47863826, TokenCalculator.TOTP_RFC6238(keySHA512, TokenCalculator.TOTP_DEFAULT_PERIOD, 20000000000L, 8, TokenCalculator.HashAlgorithm.SHA512));
+    }
+
+    @Test
+    public void testHOTPCalculation() {
+        // Test cases from https://tools.ietf.org/html/rfc4226
+        byte[] keySHA1 = "12345678901234567890".getBytes(StandardCharsets.US_ASCII);
+
+        assertEquals("755224", TokenCalculator.HOTP(keySHA1, 0, 6, TokenCalculator.HashAlgorithm.SHA1));
+        assertEquals("287082", TokenCalculator.HOTP(keySHA1, 1, 6, TokenCalculator.HashAlgorithm.SHA1));
+        assertEquals("359152", TokenCalculator.HOTP(keySHA1, 2, 6, TokenCalculator.HashAlgorithm.SHA1));
+        assertEquals("969429", TokenCalculator.HOTP(keySHA1, 3, 6, TokenCalculator.HashAlgorithm.SHA1));
+        assertEquals("338314", TokenCalculator.HOTP(keySHA1, 4, 6, TokenCalculator.HashAlgorithm.SHA1));
+        assertEquals("254676", TokenCalculator.HOTP(keySHA1, 5, 6, TokenCalculator.HashAlgorithm.SHA1));
+        assertEquals("287922", TokenCalculator.HOTP(keySHA1, 6, 6, TokenCalculator.HashAlgorithm.SHA1));
+        assertEquals("162583", TokenCalculator.HOTP(keySHA1, 7, 6, TokenCalculator.HashAlgorithm.SHA1));
+        assertEquals("399871", TokenCalculator.HOTP(keySHA1, 8, 6, TokenCalculator.HashAlgorithm.SHA1));
+        assertEquals("520489", TokenCalculator.HOTP(keySHA1, 9, 6, TokenCalculator.HashAlgorithm.SHA1));
+    }
+
+    @Test
+    public void testReusedMacCalculation() throws Exception {
+        byte[] keySHA1 = "12345678901234567890".getBytes(StandardCharsets.US_ASCII);
+        Mac mac = TokenCalculator.getMac(TokenCalculator.HashAlgorithm.SHA1, keySHA1);
+
+        // The same instance has to produce the RFC 4226 values when used repeatedly
+        assertEquals("755224", TokenCalculator.HOTP(mac, 0, 6));
+        assertEquals("287082", TokenCalculator.HOTP(mac, 1, 6));
+        assertEquals("359152", TokenCalculator.HOTP(mac, 2, 6));
+        assertEquals("755224", TokenCalculator.HOTP(mac, 0, 6));
+
+        assertEquals(94287082, TokenCalculator.TOTP_RFC6238(mac, TokenCalculator.TOTP_DEFAULT_PERIOD, 59L, 8, 0));
+        assertEquals(7081804, TokenCalculator.TOTP_RFC6238(mac, TokenCalculator.TOTP_DEFAULT_PERIOD, 1111111109L, 8, 0));
+
+        TokenCalculator.TokenBuffer buffer = new TokenCalculator.TokenBuffer();
+        assertEquals(287082, TokenCalculator.HOTP(mac, 1, 6, buffer));
+        assertEquals(7081804, TokenCalculator.TOTP_RFC6238(mac, TokenCalculator.TOTP_DEFAULT_PERIOD, 1111111109L, 8, 0, buffer));
+        assertEquals("07081804", TokenCalculator.formatToken(7081804, 8, buffer));
+        assertEquals("000042", TokenCalculator.formatToken(42, 6, buffer));
+    }
+
+    @Test
+    public void testBatchCalculation() {
+        byte[] keySHA1 = "12345678901234567890".getBytes(StandardCharsets.US_ASCII);
+
+        Entry totp = new Entry();
+        totp.setSecret(keySHA1);
+        totp.setDigits(8);
+
+        Entry hotp = new Entry();
+        hotp.setType(Entry.OTPType.HOTP);
+        hotp.setSecret(keySHA1);
+
+        Entry totp60 = new Entry();
+        totp60.setSecret(keySHA1);
+        totp60.setDigits(8);
+        totp60.setPeriod(60);
+
+        List<Entry> entries = Arrays.asList(totp, hotp, totp60);
+
+        assertEquals(Arrays.asList(0, 2), TokenCalculator.computeAll(entries, 1111111109L));
+        assertEquals("07081804", totp.getCurrentOTP());
+
+        // Only the entry with the 30 second period rolls over into a new window
+        assertEquals(Arrays.asList(0), TokenCalculator.computeAll(entries, 1111111111L));
+        assertEquals("14050471", totp.getCurrentOTP());
+        assertEquals("07081804", totp.getPrevOTP());
+
+        assertEquals(Arrays.asList(), TokenCalculator.computeAll(entries, 1111111112L));
+    }
+
+    @Test
+    public void testLookaheadCalculation() {
+        byte[] keySHA1 = "12345678901234567890".getBytes(StandardCharsets.US_ASCII);
+
+        Entry entry = new Entry();
+        entry.setSecret(keySHA1);
+        entry.setDigits(8);
+
+        // 1111111109 is in window 37037036, the precomputed token is used once the next one starts
+        entry.precomputeOTP(37037037L);
+        entry.updateOTP(false, 1111111111L);
+        assertEquals("14050471", entry.getCurrentOTP());
+
+        // Outdated precomputed tokens are ignored
+        entry.precomputeOTP(37037037L);
+        entry.setDigits(6);
+        entry.updateOTP(true, 1111111111L);
+        assertEquals("050471", entry.getCurrentOTP());
+    }
+
+    @Test
+    public void testTokenScheduler() {
+        Entry totp = new Entry();
+        totp.setSecret("12345678901234567890".getBytes(StandardCharsets.US_ASCII));
+
+        Entry hotp = new Entry();
+        hotp.setType(Entry.OTPType.HOTP);
+
+        Entry totp45 = new Entry();
+        totp45.setPeriod(45);
+
+        List<Entry> entries = Arrays.asList(totp, hotp, totp45);
+
+        assertEquals(Long.MAX_VALUE, TokenScheduler.getNextUpdate(Arrays.asList(hotp), 100, true));
+
+        // Lookahead at 27 (30 - 3), window end at 30 and 45
+        assertEquals(27, TokenScheduler.getNextUpdate(entries, 20, false));
+        assertEquals(30, TokenScheduler.getNextUpdate(entries, 27, false));
+        assertEquals(42, TokenScheduler.getNextUpdate(entries, 30, false));
+
+        // Expiry highlighting starts 7 seconds before the end of the window
+        assertEquals(23, TokenScheduler.getNextUpdate(entries, 20, true));
+        assertEquals(60, TokenScheduler.getNextWindow(30, 30));
+    }
+
+    @Test
+    public void testEntry() throws Exception {
+        byte secret[] = "Das System ist sicher".getBytes();
+        String label = "5 von 5 Sterne";
+        int period = 30;
+
+        String s = "{\"secret\":\"" + new String(new Base32().encode(secret)) + "\"," +
+                    "\"issuer\":\"\"," +
+                    "\"label\":\"" + label + "\"," +
+                    "\"digits\":6," +
+                    "\"type\":\"TOTP\"," +
+                    "\"algorithm\":\"SHA1\"," +
+                    "\"thumbnail\":\"Default\"," +
+                    "\"last_used\":0," +
+                    "\"used_frequency\":0," +
+                    "\"period\":" + Integer.toString(period) + "," +
+                    "\"tags\":[\"test1\",\"test2\"]}";
+
+        Entry e = new Entry(new JSONObject(s));
+        assertTrue(Arrays.equals(secret, e.getSecret()));
+        assertEquals(label, e.getLabel());
+
+        String[] tags = new String[]{"test1", "test2"};
+        assertEquals(tags.length, e.getTags().size());
+        assertTrue(Arrays.equals(tags, e.getTags().toArray(new String[e.getTags().size()])));
+
+        assertTrue(new JSONObject(s).similar(e.toJSON()));
+    }
+
+    @Test
+    public void testEntryList() {
+        EntryList list = new EntryList();
+
+        Entry a = new Entry(Entry.OTPType.TOTP, "JBSWY3DPEHPK3PXP", 30, 6, "Issuer", "a", TokenCalculator.HashAlgorithm.SHA1, new ArrayList<>());
+        Entry b = new Entry(Entry.OTPType.TOTP, "JBSWY3DPEHPK3PXQ", 30, 6, "Issuer", "b", TokenCalculator.HashAlgorithm.SHA1, new ArrayList<>());
+        Entry c = new Entry(Entry.OTPType.HOTP, "JBSWY3DPEHPK3PXR", 1L, 6, "Issuer", "c", TokenCalculator.HashAlgorithm.SHA1, new ArrayList<>());
+
+        assertTrue(list.addEntry(a));
+        assertTrue(list.addEntry(b));
+        assertTrue(list.addEntry(c));
+
+        // Equal entries are found by their content
+        Entry copy = new Entry(Entry.OTPType.TOTP, "JBSWY3DPEHPK3PXQ", 30, 6, "Issuer", "b", TokenCalculator.HashAlgorithm.SHA1, new ArrayList<>());
+        assertEquals(b.getFingerprint(), copy.getFingerprint());
+        assertEquals(b.hashCode(), copy.hashCode());
+        assertFalse(list.addEntry(copy));
+        assertEquals(1, list.indexOf(copy));
+        assertSame(b, list.getEntryById(b.getListId()));
+
+        // Changes to the entries are picked up by the fingerprint and the index
+        String fingerprint = c.getFingerprint();
+        int hashCode = c.hashCode();
+        c.setCounter(2);
+        assertFalse(fingerprint.equals(c.getFingerprint()));
+        assertEquals(hashCode, c.hashCode());
+        assertEquals(2, list.indexOf(new Entry(Entry.OTPType.HOTP, "JBSWY3DPEHPK3PXR", 2L, 6, "Issuer", "c", TokenCalculator.HashAlgorithm.SHA1, new ArrayList<>())));
+
+        list.swapEntries(0, 2);
+        assertEquals(0, list.indexOf(c));
+        assertEquals(2, list.indexOf(a.getListId()));
+
+        list.removeEntry(1);
+        assertEquals(-1, list.indexOf(b));
+        assertEquals(1, list.indexOf(a));
+
+        // Updating keeps the IDs of existing entries and drops the missing ones
+        long id = a.getListId();
+        ArrayList<Entry> newEntries = new ArrayList<>();
+        newEntries.add(new Entry(Entry.OTPType.TOTP, "JBSWY3DPEHPK3PXP", 30, 6, "Issuer", "a", TokenCalculator.HashAlgorithm.SHA1, new ArrayList<>()));
+        newEntries.add(copy);
+        list.updateEntries(newEntries, true);
+
+        assertEquals(2, list.getEntries().size());
+        assertEquals(id, list.getEntry(0).getListId());
+        assertSame(newEntries.get(0), list.getEntryById(id));
+        assertEquals(-1, list.indexOf(c));
+
+        // Updating takes over the order of the new list
+        Collections.reverse(newEntries);
+        list.updateEntries(newEntries, true);
+
+        assertEquals(newEntries, list.getEntries());
+        assertEquals(1, list.indexOf(id));
+    }
+
+    @Test
+    public void testEntrySearch() {
+        EntryList list = new EntryList();
+
+        list.addEntry(new Entry(Entry.OTPType.TOTP, "JBSWY3DPEHPK3PXP", 30, 6, "GitHub", "alice@example.com", TokenCalculator.HashAlgorithm.SHA1, new ArrayList<>(Arrays.asList("work", "dev"))));
+        list.addEntry(new Entry(Entry.OTPType.TOTP, "JBSWY3DPEHPK3PXQ", 30, 6, "GitLab", "bob@example.org", TokenCalculator.HashAlgorithm.SHA1, new ArrayList<>(Arrays.asList("private"))));
+        list.addEntry(new Entry(Entry.OTPType.TOTP, "JBSWY3DPEHPK3PXR", 30, 6, "Bank", "Alice", TokenCalculator.HashAlgorithm.SHA1, new ArrayList<>()));
+
+        List<Constants.SearchIncludes> all = Arrays.asList(Constants.SearchIncludes.values());
+
+        assertEquals(2, list.getFilteredEntries("git", all, Constants.SortMode.UNSORTED).size());
+        assertEquals(2, list.getFilteredEntries("ALICE", all, Constants.SortMode.UNSORTED).size());
+        assertEquals(1, list.getFilteredEntries("example.org", all, Constants.SortMode.UNSORTED).size());
+        assertEquals(0, list.getFilteredEntries("example.net", all, Constants.SortMode.UNSORTED).size());
+        assertEquals(3, list.getFilteredEntries("", all, Constants.SortMode.UNSORTED).size());
+
+        // Only the selected fields are searched and matches can't span two tags
+        assertEquals(0, list.getFilteredEntries("git", Arrays.asList(Constants.SearchIncludes.LABEL), Constants.SortMode.UNSORTED).size());
+        assertEquals(1, list.getFilteredEntries("priv", Arrays.asList(Constants.SearchIncludes.TAGS), Constants.SortMode.UNSORTED).size());
+        assertEquals(0, list.getFilteredEntries("workdev", Arrays.asList(Constants.SearchIncludes.TAGS), Constants.SortMode.UNSORTED).size());
+
+        // Changes to the entries are picked up by the index
+        list.getEntry(2).setLabel("Carol");
+        list.getEntry(2).setTags(new ArrayList<>(Arrays.asList("finance")));
+        assertEquals(1, list.getFilteredEntries("alice", all, Constants.SortMode.UNSORTED).size());
+        assertEquals(1, list.getFilteredEntries("financ", all, Constants.SortMode.UNSORTED).size());
+
+        list.removeEntry(0);
+        assertEquals(1, list.getFilteredEntries("git", all, Constants.SortMode.UNSORTED).size());
+    }
+
+    @Test
+    public void testSearchSession() {
+        EntryList list = new EntryList();
+
+        list.addEntry(new Entry(Entry.OTPType.TOTP, "JBSWY3DPEHPK3PXP", 30, 6, "GitHub", "alice", TokenCalculator.HashAlgorithm.SHA1, new ArrayList<>()));
+        list.addEntry(new Entry(Entry.OTPType.TOTP, "JBSWY3DPEHPK3PXQ", 30, 6, "GitLab", "bob", TokenCalculator.HashAlgorithm.SHA1, new ArrayList<>()));
+        list.addEntry(new Entry(Entry.OTPType.TOTP, "JBSWY3DPEHPK3PXR", 30, 6, "Bank", "gitte", TokenCalculator.HashAlgorithm.SHA1, new ArrayList<>()));
+
+        List<Constants.SearchIncludes> all = Arrays.asList(Constants.SearchIncludes.values());
+        EntryList.SearchSession session = list.newSearchSession();
+
+        // Typing narrows down the previous result, deleting searches again
+        assertEquals(3, session.getFilteredEntries("g", all, Constants.SortMode.UNSORTED).size());
+        assertEquals(3, session.getFilteredEntries("gi", all, Constants.SortMode.UNSORTED).size());
+        assertEquals(1, session.getFilteredEntries("gith", all, Constants.SortMode.UNSORTED).size());
+        assertEquals(0, session.getFilteredEntries("githx", all, Constants.SortMode.UNSORTED).size());
+        assertEquals(3, session.getFilteredEntries("git", all, Constants.SortMode.UNSORTED).size());
+        assertEquals(3, session.getFilteredEntries("", all, Constants.SortMode.UNSORTED).size());
+
+        // Changes to the list invalidate the previous result
+        assertEquals(1, session.getFilteredEntries("gitl", all, Constants.SortMode.UNSORTED).size());
+        list.getEntry(0).setIssuer("GitLab", false);
+        assertEquals(2, session.getFilteredEntries("gitla", all, Constants.SortMode.UNSORTED).size());
+
+        // The order of the list is kept
+        list.swapEntries(0, 1);
+        ArrayList<Entry> matches = session.getFilteredEntries("gitlab", all, Constants.SortMode.UNSORTED);
+        assertSame(list.getEntry(0), matches.get(0));
+        assertSame(list.getEntry(1), matches.get(1));
+    }
+
+    @Test
+    public void testTagFilter() {
+        EntryList list = new EntryList();
+
+        list.addEntry(new Entry(Entry.OTPType.TOTP, "JBSWY3DPEHPK3PXP", 30, 6, "A", "a", TokenCalculator.HashAlgorithm.SHA1, new ArrayList<>(Arrays.asList("work", "dev"))));
+        list.addEntry(new Entry(Entry.OTPType.TOTP, "JBSWY3DPEHPK3PXQ", 30, 6, "B", "b", TokenCalculator.HashAlgorithm.SHA1, new ArrayList<>(Arrays.asList("work"))));
+        list.addEntry(new Entry(Entry.OTPType.TOTP, "JBSWY3DPEHPK3PXR", 30, 6, "C", "c", TokenCalculator.HashAlgorithm.SHA1, new ArrayList<>()));
+
+        assertEquals(2, list.getAllTags().size());
+        assertTrue(list.hasTag("dev"));
+
+        List<String> workDev = Arrays.asList("work", "dev");
+        assertEquals(1, list.getEntriesFilteredByTags(workDev, false, Constants.TagFunctionality.AND, Constants.SortMode.UNSORTED).size());
+        assertEquals(2, list.getEntriesFilteredByTags(workDev, true, Constants.TagFunctionality.AND, Constants.SortMode.UNSORTED).size());
+        assertEquals(2, list.getEntriesFilteredByTags(workDev, false, Constants.TagFunctionality.OR, Constants.SortMode.UNSORTED).size());
+        assertEquals(3, list.getEntriesFilteredByTags(new ArrayList<>(), false, Constants.TagFunctionality.AND, Constants.SortMode.UNSORTED).size());
+        assertEquals(1, list.getEntriesFilteredByTags(new ArrayList<>(), true, Constants.TagFunctionality.OR, Constants.SortMode.UNSORTED).size());
+        assertEquals(0, list.getEntriesFilteredByTags(Arrays.asList("work", "unknown"), false, Constants.TagFunctionality.AND, Constants.SortMode.UNSORTED).size());
+
+        // Moving, editing and removing entries keeps the index in sync
+        list.swapEntries(0, 2);
+        ArrayList<Entry> dev = list.getEntriesFilteredByTags(Arrays.asList("dev"), false, Constants.TagFunctionality.OR, Constants.SortMode.UNSORTED);
+        assertSame(list.getEntry(2), dev.get(0));
+
+        list.getEntry(2).setTags(new ArrayList<>(Arrays.asList("private")));
+        assertFalse(list.hasTag("dev"));
+        assertTrue(list.hasTag("private"));
+
+        list.removeEntry(0);
+        assertEquals(1, list.getEntriesFilteredByTags(Arrays.asList("private"), false, Constants.TagFunctionality.OR, Constants.SortMode.UNSORTED).size());
+        assertSame(list.getEntry(1), list.getEntriesFilteredByTags(Arrays.asList("private"), false, Constants.TagFunctionality.OR, Constants.SortMode.UNSORTED).get(0));
+        assertEquals(0, list.getEntriesFilteredByTags(new ArrayList<>(), true, Constants.TagFunctionality.OR, Constants.SortMode.UNSORTED).size());
+
+        // Tags of the last entry using them disappear
+        list.removeEntry(0);
+        assertFalse(list.hasTag("work"));
+        assertEquals(Arrays.asList("private"), list.getAllTags());
+        assertSame(list.getEntry(0), list.getEntriesFilteredByTags(Arrays.asList("private"), false, Constants.TagFunctionality.OR, Constants.SortMode.UNSORTED).get(0));
+    }
+
+    @Test
+    public void testSortedEntries() {
+        EntryList list = new EntryList();
+
+        Entry a = new Entry(Entry.OTPType.TOTP, "JBSWY3DPEHPK3PXP", 30, 6, "beta", "x", TokenCalculator.HashAlgorithm.SHA1, new ArrayList<>());
+        Entry b = new Entry(Entry.OTPType.TOTP, "JBSWY3DPEHPK3PXQ", 30, 6, "Alpha", "z", TokenCalculator.HashAlgorithm.SHA1, new ArrayList<>());
+        Entry c = new Entry(Entry.OTPType.TOTP, "JBSWY3DPEHPK3PXR", 30, 6, "alpha", "y", TokenCalculator.HashAlgorithm.SHA1, new ArrayList<>());
+
+        list.addEntry(a);
+        list.addEntry(b);
+        list.addEntry(c);
+
+        // Equal issuers keep the order of the list
+        assertEquals(Arrays.asList(b, c, a), list.getEntriesSorted(Constants.SortMode.ISSUER));
+        assertEquals(Arrays.asList(a, c, b), list.getEntriesSorted(Constants.SortMode.LABEL));
+
+        list.swapEntries(1, 2);
+        assertEquals(Arrays.asList(c, b, a), list.getEntriesSorted(Constants.SortMode.ISSUER));
+
+        // Changes and subsets use the presorted order
+        b.setIssuer("gamy", false);
+        assertEquals(Arrays.asList(c, a, b), list.getEntriesSorted(Constants.SortMode.ISSUER));
+        assertEquals(Arrays.asList(a, c, b), list.getFilteredEntries("a", Arrays.asList(Constants.SearchIncludes.ISSUER), Constants.SortMode.LABEL));
+        assertEquals(Arrays.asList(c, b), list.getFilteredEntries("y", Arrays.asList(Constants.SearchIncludes.ISSUER, Constants.SearchIncludes.LABEL), Constants.SortMode.LABEL));
+
+        list.removeEntry(list.indexOf(c));
+        assertEquals(Arrays.asList(a, b), list.getEntriesSorted(Constants.SortMode.ISSUER));
+        assertEquals(EntryList.sortEntries(list.getEntries(), Constants.SortMode.LABEL), list.getEntriesSorted(Constants.SortMode.LABEL));
+
+        // Entries added after a removal still follow the order of the list
+        Entry d = new Entry(Entry.OTPType.TOTP, "JBSWY3DPEHPK3PXS", 30, 6, "Gamy", "w", TokenCalculator.HashAlgorithm.SHA1, new ArrayList<>());
+        list.addEntry(d);
+        assertEquals(Arrays.asList(a, b, d), list.getEntriesSorted(Constants.SortMode.ISSUER));
+
+        list.swapEntries(1, 2);
+        assertEquals(Arrays.asList(a, d, b), list.getEntriesSorted(Constants.SortMode.ISSUER));
+        list.removeEntry(0);
+        assertEquals(Arrays.asList(d, b), list.getEntriesSorted(Constants.SortMode.ISSUER));
+
+        // Counter changes keep the order, a new locale sorts with its collator
+        d.setCounter(7);
+        assertEquals(Arrays.asList(d, b), list.getEntriesSorted(Constants.SortMode.ISSUER));
+
+        Locale locale = Locale.getDefault();
+        try {
+            Locale.setDefault(locale.equals(Locale.GERMAN) ? Locale.FRENCH : Locale.GERMAN);
+            list.addEntry(new Entry(Entry.OTPType.TOTP, "JBSWY3DPEHPK3PXT", 30, 6, "alpha", "v", TokenCalculator.HashAlgorithm.SHA1, new ArrayList<>()));
+            assertEquals(EntryList.sortEntries(list.getEntries(), Constants.SortMode.ISSUER), list.getEntriesSorted(Constants.SortMode.ISSUER));
+            assertEquals(EntryList.sortEntries(list.getEntries(), Constants.SortMode.LABEL), list.getEntriesSorted(Constants.SortMode.LABEL));
+        } finally {
+            Locale.setDefault(locale);
+        }
+    }
+
+    @Test
+    public void testEntryURL() throws Exception {
+        try {
+            new Entry("DON'T CARE");
+            assertTrue(false);
+        } catch (Exception e) {
+        }
+
+        try {
+            new Entry("https://github.com/0xbb/");
+            assertTrue(false);
+        } catch (Exception e) {
+        }
+
+        try {
+            new Entry("otpauth://hotp/ACME%20Co:john.doe@email.com?secret=HXDMVJECJJWSRB3HWIZR4IFUGFTMXBOZ");
+            assertTrue(false);
+        }
+        catch (Exception e){
+        }
+
+        try {
+            new Entry("otpauth://totp/ACME");
+            assertTrue(false);
+        }
+        catch (Exception e){
+        }
+
+        Entry entry = new Entry("otpauth://totp/ACME%20Co:john.doe@email.com?secret=HXDMVJECJJWSRB3HWIZR4IFUGFTMXBOZ&issuer=ACME%20Co&ALGORITHM=SHA1&digits=6&period=30");
+        assertEquals("john.doe@email.com", entry.getLabel());
+
+        Entry entry2 = new Entry("otpauth://totp/ :john.doe@email.com?secret=HXDMVJECJJWSRB3HWIZR4IFUGFTMXBOZ&ALGORITHM=SHA1&digits=6&period=30");
+        assertEquals(":john.doe@email.com", entry2.getLabel());
+
+        Entry entry3 = new Entry("otpauth://totp/ :john.doe@email.com?secret=HXDMVJECJJWSRB3HWIZR4IFUGFTMXBOZ&issuer=%20&ALGORITHM=SHA1&digits=6&period=30");
+        assertEquals("john.doe@email.com", entry3.getLabel());
+
+        assertEquals("HXDMVJECJJWSRB3HWIZR4IFUGFTMXBOZ", new String(new Base32().encode(entry.getSecret())));
+
+
+        entry = new Entry("otpauth://totp/ACME%20Co:john.doe@email.com?secret=HXDMVJECJJWSRB3HWIZR4IFUGFTMXBOZ&issuer=ACME%20Co&ALGORITHM=SHA1&digits=6&period=30&tags=test1&tags=test2");
+        assertEquals("john.doe@email.com", entry.getLabel());
+
+        assertEquals("HXDMVJECJJWSRB3HWIZR4IFUGFTMXBOZ", new String(new Base32().encode(entry.getSecret())));
+        String[] tags = new String[]{"test1", "test2"};
+        assertEquals(tags.length, entry.getTags().size());
+        assertTrue(Arrays.equals(tags, entry.getTags().toArray(new String[entry.getTags().size()])));
+
+        assertEquals("otpauth://totp/john.doe%40email.com?secret=HXDMVJECJJWSRB3HWIZR4IFUGFTMXBOZ&issuer=ACME%20Co&tags=test1&tags=test2", entry.toUri());
+        assertEquals(entry, new Entry(entry.toUri()));
+    }
+
+    @Test
+    public void testDatabaseFile() throws Exception {
+        ArrayList<Entry> entries = new ArrayList<>();
+        entries.add(new Entry(Entry.OTPType.TOTP, "JBSWY3DPEHPK3PXP", 30, 6, "Issuer \"quoted\" {", "label ]", TokenCalculator.HashAlgorithm.SHA1, new ArrayList<>(Arrays.asList("t\\1", "t2", "[t]}", "\\\""))));
+        entries.add(new Entry(Entry.OTPType.HOTP, "JBSWY3DPEHPK3PXQ", 5L, 8, "\u00cf\u015b\u0161\u00fc\u00ear", "", TokenCalculator.HashAlgorithm.SHA256, new ArrayList<>()));
+
+        String json = DatabaseFileHelper.entriesToString(entries);
+        assertEquals(entries, DatabaseFileHelper.stringToEntries(json));
+        assertEquals(entries.get(0).getTags(), DatabaseFileHelper.stringToEntries(json).get(0).getTags());
+        assertEquals(0, DatabaseFileHelper.stringToEntries("[]").size());
+
+        // Escapes (including unicode escapes of brackets) inside of strings
+        String escaped = json.replace("\u00cf", "\\u00cf").replace("label ]", "label \\u005d\\u007b");
+        ArrayList<Entry> unescaped = DatabaseFileHelper.stringToEntries(escaped);
+        assertEquals(entries.get(1), unescaped.get(1));
+        assertEquals("label ]{", unescaped.get(0).getLabel());
+        assertEquals(2, DatabaseFileHelper.stringToEntries(" " + json + "\n").size());
+
+        // Malformed data keeps the entries read before the error, which are reported
+        String second = json.substring(json.indexOf("},{") + 1);
+        assertEquals(2, DatabaseFileHelper.stringToEntries(json.substring(0, json.length() - 1)).size());
+        assertEquals(1, DatabaseFileHelper.stringToEntries(json.substring(0, json.length() - 5)).size());
+        assertEquals(1, DatabaseFileHelper.stringToEntries(json.replace(second, ",{\"secret\":1}]")).size());
+        assertEquals(1, DatabaseFileHelper.stringToEntries(json.replace(second, ",x" + second)).size());
+        assertEquals(2, DatabaseFileHelper.stringToEntries(json + "x").size());
+        assertEquals(0, DatabaseFileHelper.stringToEntries("").size());
+
+        try {
+            DatabaseFileHelper.readEntries(new StringReader(json.substring(0, json.length() - 5)));
+            assertTrue(false);
+        } catch (DatabaseFileHelper.MalformedEntriesException e) {
+            assertEquals(entries.subList(0, 1), e.getEntries());
+        }
+
+        SecretKey key = EncryptionHelper.generateSymmetricKey(EncryptionHelper.generateRandom(32));
+        File file = File.createTempFile("database", ".json.aes");
+        file.deleteOnExit();
+
+        DatabaseFileHelper.writeDatabase(file, entries, key);
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+
+        // Closing the atomic stream again must not sync the closed file once more
+        File atomic = File.createTempFile("atomic", ".dat");
+        atomic.deleteOnExit();
+        OutputStream atomicOut = FileHelper.startAtomicWrite(atomic);
+        atomicOut.write(1);
+        atomicOut.close();
+        atomicOut.close();
+        FileHelper.finishAtomicWrite(atomic);
+        assertArrayEquals(new byte[] { 1 }, FileHelper.readFileToBytes(atomic));
+
+        File copy = File.createTempFile("database", ".json.aes");
+        copy.deleteOnExit();
+        FileHelper.copyFile(file, copy);
+        assertArrayEquals(FileHelper.readFileToBytes(file), FileHelper.readFileToBytes(copy));
+        assertFalse(new File(copy.getPath() + ".tmp").exists());
+
+        ArrayList<Entry> read = DatabaseFileHelper.readDatabase(file, key);
+        assertEquals(entries, read);
+        assertEquals(entries.get(0).getTags(), read.get(0).getTags());
+        assertEquals(5L, read.get(1).getCounter());
+
+        // JSON databases of older versions are read and migrated
+        byte[] legacy = EncryptionHelper.encrypt(key, json.getBytes(StandardCharsets.UTF_8));
+        FileHelper.writeBytesToFile(file, legacy);
+
+        // A failed migration keeps the old file and still returns the entries
+        File blocked = new File(file.getPath() + ".tmp");
+        assertTrue(blocked.mkdir());
+        assertEquals(entries, DatabaseFileHelper.readDatabase(file, key, true));
+        assertArrayEquals(legacy, FileHelper.readFileToBytes(file));
+        blocked.delete();
+
+        assertEquals(entries, DatabaseFileHelper.readDatabase(file, key, true));
+
+        byte[] migrated = readAll(ChunkedEncryptionHelper.decrypt(key, new FileInputStream(file)));
+        assertEquals('A', migrated[0]);
+        assertTrue(migrated.length < json.length() / 2);
+        assertEquals(entries, DatabaseFileHelper.readDatabase(file, key));
+
+        // Entries are handed out in growing batches while reading
+        ArrayList<Entry> many = new ArrayList<>();
+        for (int i = 0; i < 100; i++)
+            many.add(new Entry(Entry.OTPType.TOTP, "JBSWY3DPEHPK3PXP", 30, 6, "Issuer", "label" + i, TokenCalculator.HashAlgorithm.SHA1, new ArrayList<>()));
+
+        DatabaseFileHelper.writeDatabase(file, many, key);
+
+        ArrayList<Integer> batches = new ArrayList<>();
+        ArrayList<Entry> notified = new ArrayList<>();
+        read = DatabaseFileHelper.readDatabase(file, key, false, batch -> {
+            batches.add(batch.size());
+            notified.addAll(batch);
+        });
+
+        assertEquals(many, read);
+        assertEquals(Arrays.asList(16, 32), batches);
+        assertEquals(read.subList(0, 48), notified);
+    }
+
+    @Test
+    public void testDatabaseJournal() throws Exception {
+        Entry a = new Entry(Entry.OTPType.TOTP, "JBSWY3DPEHPK3PXP", 30, 6, "a", "a", TokenCalculator.HashAlgorithm.SHA1, new ArrayList<>(Arrays.asList("t1")));
+        Entry b = new Entry(Entry.OTPType.HOTP, "JBSWY3DPEHPK3PXQ", 1L, 6, "b", "b", TokenCalculator.HashAlgorithm.SHA1, new ArrayList<>());
+        Entry c = new Entry(Entry.OTPType.TOTP, "JBSWY3DPEHPK3PXR", 30, 6, "c", "c", TokenCalculator.HashAlgorithm.SHA1, new ArrayList<>(Arrays.asList("t1", "t2")));
+
+        SecretKey key = EncryptionHelper.generateSymmetricKey(EncryptionHelper.generateRandom(32));
+        File database = File.createTempFile("database", ".dat");
+        File journal = File.createTempFile("database", ".log");
+        database.deleteOnExit();
+        journal.deleteOnExit();
+        journal.delete();
+
+        DatabaseFileHelper.writeDatabase(database, new ArrayList<>(Arrays.asList(a, b)), key);
+
+        b.setCounter(2L);
+        DatabaseJournal.append(journal, database, key, Arrays.asList(DatabaseJournal.Change.update(1, b), DatabaseJournal.Change.add(c)));
+        DatabaseJournal.append(journal, database, key, Arrays.asList(DatabaseJournal.Change.swap(0, 2), DatabaseJournal.Change.remove(1)));
+        b.setCounter(3L);
+
+        ArrayList<Entry> entries = DatabaseFileHelper.readDatabase(database, key);
+        assertEquals(4, DatabaseJournal.replay(journal, database, key, entries));
+        assertEquals(2, entries.size());
+        assertEquals(c, entries.get(0));
+        assertEquals(Arrays.asList("t1", "t2"), entries.get(0).getTags());
+        assertEquals("a", entries.get(1).getIssuer());
+
+        // A partially written record is cut off
+        long length = journal.length();
+        try (FileOutputStream out = new FileOutputStream(journal, true)) {
+            out.write(new byte[] { 0, 0, 1, 0, 42 });
+        }
+        entries = DatabaseFileHelper.readDatabase(database, key);
+        assertEquals(4, DatabaseJournal.replay(journal, database, key, entries));
+        assertEquals(length, journal.length());
+
+        // Changes to an older database file are ignored
+        DatabaseFileHelper.writeDatabase(database, entries, key);
+        entries = DatabaseFileHelper.readDatabase(database, key);
+        assertEquals(0, DatabaseJournal.replay(journal, database, key, entries));
+        assertEquals(2, entries.size());
+
+        DatabaseJournal.append(journal, database, key, Collections.singletonList(DatabaseJournal.Change.update(1, b)));
+        entries = DatabaseFileHelper.readDatabase(database, key);
+        assertEquals(1, DatabaseJournal.replay(journal, database, key, entries));
+        assertEquals(3L, entries.get(1).getCounter());
+
+        // A record that can't be decrypted is cut off, so changes appended later are replayed
+        length = journal.length();
+        DatabaseJournal.append(journal, database, key, Collections.singletonList(DatabaseJournal.Change.swap(0, 1)));
+        try (RandomAccessFile file = new RandomAccessFile(journal, "rw")) {
+            file.seek(file.length() - 1);
+            int last = file.read();
+            file.seek(file.length() - 1);
+            file.write(last ^ 1);
+        }
+        entries = DatabaseFileHelper.readDatabase(database, key);
+        assertEquals(1, DatabaseJournal.replay(journal, database, key, entries));
+        assertEquals(length, journal.length());
+
+        DatabaseJournal.append(journal, database, key, Collections.singletonList(DatabaseJournal.Change.remove(0)));
+        entries = DatabaseFileHelper.readDatabase(database, key);
+        assertEquals(2, DatabaseJournal.replay(journal, database, key, entries));
+        assertEquals(1, entries.size());
+        assertEquals(3L, entries.get(0).getCounter());
+    }
+
+    @Test
+    public void testChunkedEncryption() throws Exception {
+        SecretKey key = EncryptionHelper.generateSymmetricKey(EncryptionHelper.generateRandom(32));
+        int chunkSize = 64;
+
+        for (int length : new int[] { 0, 1, chunkSize - 1, chunkSize, chunkSize + 1, 3 * chunkSize }) {
+            byte[] plain = EncryptionHelper.generateRandom(length);
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (OutputStream encrypt = ChunkedEncryptionHelper.encrypt(key, out, chunkSize)) {
+                encrypt.write(plain);
+            }
+            byte[] encrypted = out.toByteArray();
+
+            assertTrue(ChunkedEncryptionHelper.isChunked(encrypted, 0, encrypted.length));
+            assertArrayEquals(plain, readAll(ChunkedEncryptionHelper.decrypt(key, new ByteArrayInputStream(encrypted))));
+
+            // Modified data
+            byte[] modified = encrypted.clone();
+            modified[modified.length - 1] ^= 1;
+            assertDecryptionFails(key, modified);
+
+            // Missing chunks at the end
+            if (length > chunkSize)
+                assertDecryptionFails(key, Arrays.copyOf(encrypted, encrypted.length - (length % chunkSize + 16)));
+        }
+
+        // Ciphers are pooled, one that is used by an open stream isn't handed out again
+        byte[] plain = EncryptionHelper.generateRandom(3 * chunkSize);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        try (OutputStream encrypt = ChunkedEncryptionHelper.encrypt(key, out, chunkSize)) {
+            encrypt.write(plain, 0, chunkSize + 1);
+
+            byte[] record = EncryptionHelper.encrypt(key, plain);
+            assertArrayEquals(plain, EncryptionHelper.decrypt(key, record));
+
+            encrypt.write(plain, chunkSize + 1, plain.length - chunkSize - 1);
+        }
+
+        assertArrayEquals(plain, readAll(ChunkedEncryptionHelper.decrypt(key, new ByteArrayInputStream(out.toByteArray()))));
+    }
+
+    private static void assertDecryptionFails(SecretKey key, byte[] encrypted) throws Exception {
+        try {
+            readAll(ChunkedEncryptionHelper.decrypt(key, new ByteArrayInputStream(encrypted)));
+            fail("Decryption didn't fail");
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        try (InputStream input = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[100];
+            int count;
+
+            while ((count = input.read(buffer)) != -1)
+                out.write(buffer, 0, count);
+
+            return out.toByteArray();
+        }
+    }
+
+    @Test
+    public void testEncryptionHelper() throws NoSuchPaddingException, BadPaddingException, InvalidKeyException, NoSuchAlgorithmException, IllegalBlockSizeException, UnsupportedEncodingException, InvalidAlgorithmParameterException, DecoderException, ShortBufferException {
+
+
+        // https://golang.org/src/crypto/cipher/gcm_test.go
+        String[][] testCases =  new String[][]{
+                new String []{"11754cd72aec309bf52f7687212e8957","3c819d9a9bed087615030b65","", "250327c674aaf477aef2675748cf6971" },
+                new String []{"ca47248ac0b6f8372a97ac43508308ed","ffd2b598feabc9019262d2be","", "60d20404af527d248d893ae495707d1a" },
+                new String []{"7fddb57453c241d03efbed3ac44e371c","ee283a3fc75575e33efd4887","d5de42b461646c255c87bd2962d3b9a2", "2ccda4a5415cb91e135c2a0f78c9b2fdb36d1df9b9d5e596f83e8b7f52971cb3" },
+                new String []{"ab72c77b97cb5fe9a382d9fe81ffdbed","54cc7dc2c37ec006bcc6d1da","007c5e5b3e59df24a7c355584fc1518d", "0e1bde206a07a9c2c1b65300f8c649972b4401346697138c7a4891ee59867d0c" },
+                new String []{"feffe9928665731c6d6a8f9467308308","cafebabefacedbaddecaf888","d9313225f88406e5a55909c5aff5269a86a7a9531534f7da2e4c303d8a318a721c3c0c95956809532fcf0e2449a6b525b16aedf5aa0de657ba637b391aafd255", "42831ec2217774244b7221b784d0d49ce3aa212f2c02a4e035c17e2329aca12e21d514b25466931c7d8f6a5aac84aa051ba30b396a0aac973d58e091473f59854d5c2af327cd64a62cf35abd2ba6fab4" },
+
+        };
+
+        for(String[] testCase: testCases){
+
+                SecretKeySpec k = new SecretKeySpec(new Hex().decode(testCase[0].getBytes()), "AES");
+                IvParameterSpec iv = new IvParameterSpec(new Hex().decode(testCase[1].getBytes()));
+
+                byte[] cipherTExt = EncryptionHelper.encrypt(k,iv,new Hex().decode(testCase[2].getBytes()));
+                String cipher = new String(new Hex().encode(cipherTExt));
+
+                assertEquals(cipher, testCase[3]);
+
+                assertEquals(testCase[2], new String(new Hex().encode(EncryptionHelper.decrypt(k, iv, cipherTExt))));
+
+                // IV and ciphertext in the middle of a larger array
+                byte[] combined = new byte[3 + iv.getIV().length + cipherTExt.length + 2];
+                System.arraycopy(iv.getIV(), 0, combined, 3, iv.getIV().length);
+                System.arraycopy(cipherTExt, 0, combined, 3 + iv.getIV().length, cipherTExt.length);
+
+                assertEquals(testCase[2], new String(new Hex().encode(EncryptionHelper.decrypt(k, combined, 3, combined.length - 5))));
+
+        }
+
+        SecretKey key = EncryptionHelper.generateSymmetricKey(EncryptionHelper.generateRandom(32));
+        byte[] plain = EncryptionHelper.generateRandom(100);
+
+        byte[] encrypted = EncryptionHelper.encrypt(key, plain, 10, 80);
+        assertEquals(EncryptionHelper.getEncryptedSize(80), encrypted.length);
+        assertArrayEquals(Arrays.copyOfRange(plain, 10, 90), EncryptionHelper.decrypt(key, encrypted));
+
+        ByteBuffer buffer = ByteBuffer.allocate(4 + EncryptionHelper.getEncryptedSize(plain.length));
+        buffer.putInt(42);
+        EncryptionHelper.encrypt(key, ByteBuffer.wrap(plain), buffer);
+        assertFalse(buffer.hasRemaining());
+
+        buffer.flip();
+        buffer.getInt();
+        ByteBuffer decrypted = ByteBuffer.allocate(plain.length);
+        EncryptionHelper.decrypt(key, buffer, decrypted);
+        assertArrayEquals(plain, decrypted.array());
+
+        try {
+            EncryptionHelper.decrypt(key, new byte[5]);
+            fail("Decryption didn't fail");
+        } catch (IllegalBlockSizeException expected) {
+            // Shorter than the IV
+        }
+    }
+}